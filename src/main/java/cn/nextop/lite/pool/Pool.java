@@ -20,8 +20,16 @@ package cn.nextop.lite.pool;
 import cn.nextop.lite.pool.glossary.Lifecycle;
 import cn.nextop.lite.pool.glossary.Named;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 /**
  * @author Baoyi Chen
  */
@@ -36,6 +44,37 @@ public interface Pool<T> extends Named, Lifecycle {
 
 	T acquire(long timeout, TimeUnit unit);
 
+	/**
+	 * Async, completed with null on timeout, cancel the future to stop waiting.
+	 * Blocks the caller unless overridden.
+	 */
+	default CompletableFuture<T> acquireAsync() {
+		return acquireAsync(getConfig().getTimeout(), MILLISECONDS);
+	}
+
+	default CompletableFuture<T> acquireAsync(long timeout, TimeUnit unit) {
+		return CompletableFuture.completedFuture(acquire(timeout, unit));
+	}
+
+	/**
+	 * Batch, acquires one by one unless overridden
+	 */
+	default void releaseAll(Collection<T> items) {
+		for (T v : items) release(v);
+	}
+
+	default List<T> acquire(int n, long timeout, TimeUnit unit) {
+		return acquire(n, timeout, unit, false); /* all or nothing */
+	}
+
+	default List<T> acquire(int n, long timeout, TimeUnit unit, boolean partial) {
+		if (n < 0) throw new IllegalArgumentException("n: " + n); final List<T> r = new ArrayList<>(n);
+		for (long d = nanoTime() + unit.toNanos(timeout); r.size() < n; ) {
+			final T v = acquire(Math.max(d - nanoTime(), 0L), NANOSECONDS); if (v == null) break; r.add(v);
+		}
+		if (r.size() < n && !partial) { releaseAll(r); r.clear(); } return r;
+	}
+
 	/**
 	 *
 	 */
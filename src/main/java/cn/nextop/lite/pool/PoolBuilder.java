@@ -19,6 +19,7 @@ package cn.nextop.lite.pool;
 import cn.nextop.lite.pool.impl.ObjectPool;
 import cn.nextop.lite.pool.support.PoolAllocatorFactory;
 import cn.nextop.lite.pool.support.allocator.DefaultAllocator;
+import cn.nextop.lite.pool.util.clock.Clock;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -37,16 +38,26 @@ public class PoolBuilder<T> {
      */
     public PoolBuilder<T> tti(long ms) { config.setTti(ms); return this; }
     public PoolBuilder<T> ttl(long ms) { config.setTtl(ms); return this; }
+    public PoolBuilder<T> spins(int v) { config.setSpins(v); return this; }
     public PoolBuilder<T> fifo(boolean v) { config.setFifo(v); return this; }
+    public PoolBuilder<T> yields(int v) { config.setYields(v); return this; }
+    public PoolBuilder<T> clock(Clock v) { config.setClock(v); return this; }
+    public PoolBuilder<T> locals(int v) { config.setLocals(v); return this; }
     public PoolBuilder<T> local(boolean v) { config.setLocal(v); return this; }
     public PoolBuilder<T> minimum(int v) { config.setMinimum(v); return this; }
     public PoolBuilder<T> maximum(int v) { config.setMaximum(v); return this; }
     public PoolBuilder<T> tenancy(long ms) { config.setTenancy(ms); return this; }
     public PoolBuilder<T> timeout(long ms) { config.setTimeout(ms); return this; }
     public PoolBuilder<T> verbose(boolean v) { config.setVerbose(v); return this; }
+    public PoolBuilder<T> prefill(boolean v) { config.setPrefill(v); return this; }
+    public PoolBuilder<T> compact(boolean v) { config.setCompact(v); return this; }
     public PoolBuilder<T> interval(long ms) { config.setInterval(ms); return this; }
+    public PoolBuilder<T> lockfree(boolean v) { config.setLockfree(v); return this; }
+    public PoolBuilder<T> freshness(long ms) { config.setFreshness(ms); return this; }
+    public PoolBuilder<T> concurrency(int v) { config.setConcurrency(v); return this; }
     public PoolBuilder<T> supplier(Supplier<T> v) { config.setSupplier(v); return this; }
     public PoolBuilder<T> consumer(Consumer<T> v) { config.setConsumer(v); return this; }
+    public PoolBuilder<T> factory(PoolFactory<T> v) { config.setFactory(v); return this; }
     public PoolBuilder<T> validator(Predicate<T> v) { config.setValidator(v); return this; }
     public PoolBuilder<T> validation(PoolValidation v) { config.setValidation(v); return this; }
     public PoolBuilder<T> allocator(PoolAllocatorFactory<T> v) { this.factory = v; return this; }
@@ -18,6 +18,8 @@ package cn.nextop.lite.pool;
 
 import cn.nextop.lite.pool.util.Objects;
 import cn.nextop.lite.pool.util.Strings;
+import cn.nextop.lite.pool.util.clock.Clock;
+import cn.nextop.lite.pool.util.clock.SystemClock;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -33,15 +35,24 @@ import static cn.nextop.lite.pool.PoolValidation.PULSE;
  */
 public class PoolConfig<T> implements PoolConfigMXBean {
 	//
+	protected int concurrency = 1;
 	protected boolean fifo = false;
+	protected int locals = 1;
 	protected boolean local = true;
+	protected boolean prefill = false;
+	protected boolean compact = false;
+	protected boolean lockfree = false;
+	protected int spins = 0, yields = 0;
 	protected Consumer<T> consumer;
+	protected Clock clock = SystemClock.INSTANCE;
+	protected PoolFactory<T> factory;
 	protected Supplier<T> supplier;
 	protected Predicate<T> validator;
 	protected volatile int minimum = 0;
 	protected volatile int maximum = 16;
 	protected volatile boolean verbose = false;
 	protected long interval = TimeUnit.SECONDS.toMillis(15);
+	protected volatile long freshness = 0L;
 	protected volatile long tti = TimeUnit.MINUTES.toMillis(15);
 	protected volatile long ttl = TimeUnit.MINUTES.toMillis(60);
 	protected volatile long tenancy = TimeUnit.MINUTES.toMillis(1);
@@ -71,18 +82,38 @@ public class PoolConfig<T> implements PoolConfigMXBean {
 	/**
 	 *
 	 */
+	public int getSpins() { return this.spins; }
 	public boolean isFifo() { return this.fifo; }
+	public int getYields() { return this.yields; }
+	public Clock getClock() { return this.clock; }
+	public int getLocals() { return this.locals; }
+	public void setSpins(int v) { this.spins = v; }
 	public boolean isLocal() { return this.local; }
+	public void setLocals(int v) { this.locals = v; }
+	public void setYields(int v) { this.yields = v; }
 	public void setFifo(boolean v) { this.fifo = v; }
+	public void setClock(Clock v) { this.clock = v; }
 	public void setLocal(boolean v) { this.local = v; }
 	public long getInterval() { return this.interval; }
+	public boolean isCompact() { return this.compact; }
+	public boolean isPrefill() { return this.prefill; }
+	public long getFreshness() { return this.freshness; }
+	public boolean isLockfree() { return this.lockfree; }
 	public void setInterval(long v) { this.interval = v; }
+	public void setCompact(boolean v) { this.compact = v; }
+	public void setPrefill(boolean v) { this.prefill = v; }
+	public void setFreshness(long v) { this.freshness = v; }
+	public int getConcurrency() { return this.concurrency; }
+	public void setLockfree(boolean v) { this.lockfree = v; }
 	public Consumer<T> getConsumer() { return this.consumer; }
 	public Supplier<T> getSupplier() { return this.supplier; }
+	public PoolFactory<T> getFactory() { return this.factory; }
+	public void setConcurrency(int v) { this.concurrency = v; }
 	public PoolValidation getValidation() { return validation; }
 	public Predicate<T> getValidator() { return this.validator; }
 	public void setConsumer(Consumer<T> v) { this.consumer = v; }
 	public void setSupplier(Supplier<T> v) { this.supplier = v; }
+	public void setFactory(PoolFactory<T> v) { this.factory = v; }
 	public void setValidator(Predicate<T> v) { this.validator = v; }
 	public void setValidation(PoolValidation v) { this.validation = v; }
 	public <V> V getCookie(Object key) { return Objects.cast(this.cookies.get(key)); }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Asynchronous alternative to the supplier and consumer of {@link PoolConfig}, used
+ * instead of them if present. Neither method should block, the allocator keeps many
+ * creations in flight without dedicating a thread to each of them.
+ *
+ * @author Jingqi Xu
+ */
+public interface PoolFactory<T> {
+	
+	CompletionStage<T> create();
+	
+	CompletionStage<Void> destroy(T item);
+}
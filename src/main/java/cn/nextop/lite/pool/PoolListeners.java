@@ -19,19 +19,23 @@ package cn.nextop.lite.pool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+
+import static cn.nextop.lite.pool.util.Objects.cast;
 
 /**
+ * Listeners are kept in a copy-on-write array, an empty array costs no dispatch.
+ *
  * @author Jingqi Xu
  */
 public class PoolListeners<T> implements PoolListener<T> {
 	//
 	private static final Logger LOGGER = LoggerFactory.getLogger(PoolListeners.class);
+	private static final PoolListener<?>[] EMPTY = new PoolListener<?>[0];
 	
 	//
 	private final String name;
-	private final List<PoolListener<T>> listeners = new CopyOnWriteArrayList<>();
+	private volatile PoolListener<T>[] listeners = cast(EMPTY);
 	
 	/**
 	 * 
@@ -43,12 +47,20 @@ public class PoolListeners<T> implements PoolListener<T> {
 	/**
 	 * 
 	 */
-	public boolean addListener(PoolListener<T> listener) {
-		return this.listeners.add(listener);
+	public boolean isEmpty() {
+		return this.listeners.length == 0;
+	}
+	
+	public synchronized boolean addListener(PoolListener<T> listener) {
+		final PoolListener<T>[] v = this.listeners; final int n = v.length;
+		final PoolListener<T>[] r = Arrays.copyOf(v, n + 1); r[n] = listener; this.listeners = r; return true;
 	}
 	
-	public boolean delListener(PoolListener<T> listener) {
-		return this.listeners.remove(listener);
+	public synchronized boolean delListener(PoolListener<T> listener) {
+		final PoolListener<T>[] v = this.listeners; int i = 0, n = v.length;
+		while (i < n && !java.util.Objects.equals(v[i], listener)) i++; if (i == n) return false;
+		final PoolListener<T>[] r = Arrays.copyOf(v, n - 1);
+		System.arraycopy(v, i + 1, r, i, n - i - 1); this.listeners = r; return true;
 	}
 	
 	/**
@@ -56,12 +68,15 @@ public class PoolListeners<T> implements PoolListener<T> {
 	 */
 	@Override
 	public void onEvent(PoolEvent<T> event) {
-		for(final PoolListener<T> listener : this.listeners) {
-			try {
-				listener.onEvent(event);
-			} catch(Throwable t) {
-				LOGGER.error("[" + name + "]failed to notify: " + event, t);
-			}
+		final PoolListener<T>[] v = this.listeners;
+		for (int i = 0; i < v.length; i++) notify(v[i], event);
+	}
+	
+	private void notify(PoolListener<T> listener, PoolEvent<T> event) {
+		try {
+			listener.onEvent(event);
+		} catch(Throwable t) {
+			LOGGER.error("[" + name + "]failed to notify: " + event, t);
 		}
 	}
 }
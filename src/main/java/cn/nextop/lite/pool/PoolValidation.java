@@ -26,6 +26,7 @@ public class PoolValidation implements Copyable<PoolValidation> {
 	public static final byte PULSE = (byte)(1 << 0);
 	public static final byte ACQUIRE = (byte)(1 << 1);
 	public static final byte RELEASE = (byte)(1 << 2);
+	public static final byte BACKGROUND = (byte)(1 << 3);
 	
 	//
 	private byte value;
@@ -105,4 +106,12 @@ public class PoolValidation implements Copyable<PoolValidation> {
 	public void setReleaseEnabled(boolean enabled) {
 		if(enabled) this.value |= RELEASE; else this.value &= ~RELEASE;
 	}
+	
+	public boolean isBackgroundEnabled() {
+		return (this.value & BACKGROUND) != 0;
+	}
+	
+	public void setBackgroundEnabled(boolean enabled) {
+		if(enabled) this.value |= BACKGROUND; else this.value &= ~BACKGROUND;
+	}
 }
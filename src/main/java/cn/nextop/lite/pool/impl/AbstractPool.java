@@ -31,6 +31,10 @@ import cn.nextop.lite.pool.util.Strings;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static cn.nextop.lite.pool.support.PoolAllocator.Slot;
@@ -143,13 +147,45 @@ public abstract class AbstractPool<T> extends Lifecyclet implements Pool<T> {
 
 	@Override
 	public void release(T item) {
-		final Slot<T> slot = this.allocator.release(item);
-		if (slot != null) notify(PoolEvent.release(item));
+		final Slot<T> slot = this.allocator.release(item); if (slot == null) return;
+		if (!this.listeners.isEmpty()) notify(PoolEvent.release(item)); // No garbage
 	}
 
 	@Override
 	public T acquire(long t, TimeUnit u) {
-		Slot<T> r = allocator.acquire(t, u); if(r == null) return null;
-		T item = r.get(); notify(PoolEvent.acquire(item)); return item;
+		Slot<T> r = allocator.acquire(t, u); if(r == null) return null; T item = r.get();
+		if (!this.listeners.isEmpty()) notify(PoolEvent.acquire(item)); return item;
+	}
+
+	/**
+	 * Async
+	 */
+	@Override
+	public CompletableFuture<T> acquireAsync(long t, TimeUnit u) {
+		final CompletableFuture<Slot<T>> f = this.allocator.acquireAsync(t, u);
+		final CompletableFuture<T> r = f.thenApply(v -> {
+			if (v == null) return null; final T item = v.get();
+			if (!listeners.isEmpty()) notify(PoolEvent.acquire(item)); return item;
+		});
+		r.whenComplete((v, e) -> { // Propagate cancellation, give back a slot acquired meanwhile
+			if (!r.isCancelled() || f.cancel(false)) return; final Slot<T> x = f.getNow(null);
+			if (x != null) this.allocator.release(x.get());
+		}); return r;
+	}
+
+	/**
+	 * Batch
+	 */
+	@Override
+	public void releaseAll(Collection<T> items) {
+		final List<Slot<T>> r = this.allocator.release(items); if (listeners.isEmpty()) return;
+		for (Slot<T> v : r) notify(PoolEvent.release(v.get()));
+	}
+
+	@Override
+	public List<T> acquire(int n, long t, TimeUnit u, boolean partial) {
+		final List<Slot<T>> slots = allocator.acquire(n, t, u, partial);
+		final List<T> r = new ArrayList<>(slots.size()); for (Slot<T> v : slots) r.add(v.get());
+		if (!this.listeners.isEmpty()) for (T v : r) notify(PoolEvent.acquire(v)); return r;
 	}
 }
@@ -17,8 +17,17 @@
 package cn.nextop.lite.pool.support;
 
 import cn.nextop.lite.pool.glossary.Lifecycle;
+import cn.nextop.lite.pool.util.Objects;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * @author Jingqi Xu
@@ -33,6 +42,29 @@ public interface PoolAllocator<T> extends Lifecycle, PoolAllocatorMXBean {
 
 	Slot<T> acquire(long timeout, TimeUnit unit);
 
+	/**
+	 * Completed with the slot, or null on timeout, blocks the caller unless overridden
+	 */
+	default CompletableFuture<Slot<T>> acquireAsync(long timeout, TimeUnit unit) {
+		return CompletableFuture.completedFuture(acquire(timeout, unit));
+	}
+
+	/**
+	 * Batch, if fewer than n slots are acquired in time they are all released back unless partial
+	 */
+	default List<Slot<T>> release(Collection<T> t) {
+		final List<Slot<T>> r = new ArrayList<>(t.size());
+		for (T v : t) { final Slot<T> x = release(v); if (x != null) r.add(x); } return r;
+	}
+
+	default List<Slot<T>> acquire(int n, long timeout, TimeUnit unit, boolean partial) {
+		if (n < 0) throw new IllegalArgumentException("n: " + n); final List<Slot<T>> r = new ArrayList<>(n);
+		for (long d = nanoTime() + unit.toNanos(timeout); r.size() < n; ) {
+			final Slot<T> v = acquire(Math.max(d - nanoTime(), 0L), NANOSECONDS); if (v == null) break; r.add(v);
+		}
+		if (r.size() < n && !partial) { for (Slot<T> v : r) release(v.get()); r.clear(); } return r;
+	}
+
 	/**
 	 *
 	 */
@@ -52,5 +84,46 @@ public interface PoolAllocator<T> extends Lifecycle, PoolAllocatorMXBean {
 		T get(); long getId(); <V> V getCookie(Object key); Object setCookie(Object k, Object v);
 
 		void touch(); boolean acquire(); boolean release(); boolean abandon(); boolean destroy();
+
+		/**
+		 * Validated within the window, never unless overridden
+		 */
+		default boolean isFresh(long window) { return false; }
+
+		/**
+		 * Timestamps, unknown (zero) unless overridden
+		 */
+		default long getCreateTime() { return 0L; }
+
+		default long getAccessTime() { return 0L; }
+
+		/**
+		 * Fixed-index cookies, kept in the cookie map unless overridden
+		 */
+		default <V> V getCookie(Cookie<V> k) { return getCookie((Object) k); }
+
+		default <V> V setCookie(Cookie<V> k, V v) { return Objects.cast(setCookie((Object) k, v)); }
+	}
+
+	/**
+	 * A slot cookie stored at a fixed index of an array instead of a hash map, like
+	 * {@link cn.nextop.lite.pool.util.concurrent.thread.FastThreadLocal}. Cookies must be
+	 * declared in a static way, a slot whose array was created before the cookie was
+	 * declared falls back to its map for it.
+	 */
+	final class Cookie<V> {
+		//
+		private static final AtomicInteger INDEX = new AtomicInteger(0);
+
+		//
+		private final String name;
+		private final int index = INDEX.getAndIncrement();
+
+		//
+		public Cookie(String name) { this.name = name; }
+		public int getIndex() { return this.index; }
+		public String getName() { return this.name; }
+		@Override public String toString() { return this.name; }
+		public static int count() { return INDEX.get(); } /* registered so far */
 	}
 }
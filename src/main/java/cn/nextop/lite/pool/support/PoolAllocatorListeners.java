@@ -19,21 +19,25 @@ package cn.nextop.lite.pool.support;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
 
 import static cn.nextop.lite.pool.support.PoolAllocator.Slot;
+import static cn.nextop.lite.pool.util.Objects.cast;
 
 /**
+ * Listeners are kept in a copy-on-write array, an empty array costs no dispatch.
+ *
  * @author Jingqi Xu
  */
 public class PoolAllocatorListeners<T> implements PoolAllocatorListener<T> {
 	//
 	private static final Logger LOGGER = LoggerFactory.getLogger(PoolAllocatorListeners.class);
+	private static final PoolAllocatorListener<?>[] EMPTY = new PoolAllocatorListener<?>[0];
 	
 	//
 	private final String name;
-	private final List<PoolAllocatorListener<T>> listeners = new CopyOnWriteArrayList<>();
+	private volatile PoolAllocatorListener<T>[] listeners = cast(EMPTY);
 	
 	/**
 	 * 
@@ -45,12 +49,20 @@ public class PoolAllocatorListeners<T> implements PoolAllocatorListener<T> {
 	/**
 	 * 
 	 */
-	public boolean addListener(PoolAllocatorListener<T> listener) {
-		return this.listeners.add(listener);
+	public boolean isEmpty() {
+		return this.listeners.length == 0;
+	}
+	
+	public synchronized boolean addListener(PoolAllocatorListener<T> listener) {
+		final PoolAllocatorListener<T>[] v = this.listeners; final int n = v.length;
+		final PoolAllocatorListener<T>[] r = Arrays.copyOf(v, n + 1); r[n] = listener; this.listeners = r; return true;
 	}
 	
-	public boolean delListener(PoolAllocatorListener<T> listener) {
-		return this.listeners.remove(listener);
+	public synchronized boolean delListener(PoolAllocatorListener<T> listener) {
+		final PoolAllocatorListener<T>[] v = this.listeners; int i = 0, n = v.length;
+		while (i < n && !java.util.Objects.equals(v[i], listener)) i++; if (i == n) return false;
+		final PoolAllocatorListener<T>[] r = Arrays.copyOf(v, n - 1);
+		System.arraycopy(v, i + 1, r, i, n - i - 1); this.listeners = r; return true;
 	}
 	
 	/**
@@ -58,34 +70,27 @@ public class PoolAllocatorListeners<T> implements PoolAllocatorListener<T> {
 	 */
 	@Override
 	public void onAcquire(Slot<T> v) {
-		for(final PoolAllocatorListener<T> listener : this.listeners) {
-			try {
-				listener.onAcquire(v);
-			} catch(Throwable tx) {
-				LOGGER.error("[" + this.name + "]failed to notify: " + v, tx);
-			}
-		}
+		final PoolAllocatorListener<T>[] a = this.listeners;
+		for (int i = 0; i < a.length; i++) notify(a[i], v, PoolAllocatorListener::onAcquire);
 	}
 	
 	@Override
 	public void onRelease(Slot<T> v) {
-		for(final PoolAllocatorListener<T> listener : this.listeners) {
-			try {
-				listener.onRelease(v);
-			} catch(Throwable tx) {
-				LOGGER.error("[" + this.name + "]failed to notify: " + v, tx);
-			}
-		}
+		final PoolAllocatorListener<T>[] a = this.listeners;
+		for (int i = 0; i < a.length; i++) notify(a[i], v, PoolAllocatorListener::onRelease);
 	}
 	
 	@Override
 	public void onLeakage(Slot<T> v) {
-		for(final PoolAllocatorListener<T> listener : this.listeners) {
-			try {
-				listener.onLeakage(v);
-			} catch(Throwable tx) {
-				LOGGER.error("[" + this.name + "]failed to notify: " + v, tx);
-			}
+		final PoolAllocatorListener<T>[] a = this.listeners;
+		for (int i = 0; i < a.length; i++) notify(a[i], v, PoolAllocatorListener::onLeakage);
+	}
+	
+	private void notify(PoolAllocatorListener<T> listener, Slot<T> v, BiConsumer<PoolAllocatorListener<T>, Slot<T>> event) {
+		try {
+			event.accept(listener, v);
+		} catch(Throwable tx) {
+			LOGGER.error("[" + this.name + "]failed to notify: " + v, tx);
 		}
 	}
 }
@@ -29,4 +29,25 @@ public interface PoolAllocatorMXBean {
 
     int getPendingCount();
 
+    int getDestroyingCount();
+
+    long getPulseTime();
+
+    /**
+     * Thread local metrics, zero unless the allocator caches slots per thread
+     */
+    default long getLocalHitCount() { return 0L; }
+
+    default long getLocalMissCount() { return 0L; }
+
+    default long getLocalEmptyCount() { return 0L; }
+
+    default long getLocalStolenCount() { return 0L; }
+
+    default long getLocalInvalidCount() { return 0L; }
+
+    default long getFallbackCount() { return 0L; }
+
+    default long getFallbackTime() { return 0L; }
+
 }
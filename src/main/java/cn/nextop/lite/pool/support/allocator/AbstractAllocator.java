@@ -18,22 +18,37 @@ package cn.nextop.lite.pool.support.allocator;
 
 import cn.nextop.lite.pool.Pool;
 import cn.nextop.lite.pool.PoolConfig;
+import cn.nextop.lite.pool.PoolFactory;
 import cn.nextop.lite.pool.PoolValidation;
+import cn.nextop.lite.pool.glossary.Lifecycle;
 import cn.nextop.lite.pool.glossary.Lifecyclet;
 import cn.nextop.lite.pool.support.PoolAllocator;
+import cn.nextop.lite.pool.support.PoolAllocator.Cookie;
 import cn.nextop.lite.pool.support.PoolAllocatorListener;
 import cn.nextop.lite.pool.support.PoolAllocatorListeners;
 import cn.nextop.lite.pool.util.Objects;
 import cn.nextop.lite.pool.util.Strings;
+import cn.nextop.lite.pool.util.clock.Clock;
 import cn.nextop.lite.pool.util.concurrent.PaddedAtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -41,32 +56,41 @@ import java.util.function.Supplier;
 import static cn.nextop.lite.pool.support.allocator.AbstractAllocator.Status.BUSY;
 import static cn.nextop.lite.pool.support.allocator.AbstractAllocator.Status.GONE;
 import static cn.nextop.lite.pool.support.allocator.AbstractAllocator.Status.IDLE;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater;
 
 /**
  * @author Baoyi Chen
  * @param <T>
  */
 public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAllocator<T> {
+    //
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractAllocator.class);
+
     //
     public enum Status { BUSY, IDLE, GONE };
 
     //
     protected final String name;
     protected final Pool<T> pool;
+    protected final Clock clock;
     protected final PaddedAtomicLong sequence;
     protected PoolAllocatorListeners<T> listeners;
     protected static final String PREFIX = "cn.nextop.lite.pool:type=PoolAllocator";
+    @SuppressWarnings("rawtypes") protected static final AtomicReferenceFieldUpdater<AbstractAllocator.SlotImpl, AtomicReferenceArray> VALUES = newUpdater(AbstractAllocator.SlotImpl.class, AtomicReferenceArray.class, "values");
 
     //
     protected abstract Slot<T> doRelease(T t);
-    protected Slot<T> wrap(T t) { return new SlotImpl(t); }
+    protected Slot<T> wrap(T t) { return getConfig().isCompact() ? new CompactSlot<>(this, t) : new SlotImpl(t); }
     protected abstract Slot<T> doAcquire(long timeout, TimeUnit unit);
 
     /**
      *
      */
     public AbstractAllocator(final Pool<T> pool, String name) {
-        this.name = name; this.pool = pool;
+        this.name = name; this.pool = pool; this.clock = pool.getConfig().getClock();
         this.sequence = new PaddedAtomicLong(1L);
         listeners = new PoolAllocatorListeners<>(name + ".listeners");
     }
@@ -75,11 +99,13 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
     protected long doStop(long timeout, TimeUnit unit) throws Exception {
         ObjectName n = new ObjectName(PREFIX + "(" + name + ")");
         MBeanServer m = ManagementFactory.getPlatformMBeanServer();
-        if(m.isRegistered(n)) m.unregisterMBean(n); return timeout;
+        if(m.isRegistered(n)) m.unregisterMBean(n);
+        if(clock instanceof Lifecycle) Lifecyclet.stopQuietly((Lifecycle) clock); return timeout;
     }
 
     @Override
     protected void doStart() throws Exception {
+        if(clock instanceof Lifecycle) ((Lifecycle) clock).start(); /* shared */
         final MBeanServer m = ManagementFactory.getPlatformMBeanServer();
         final ObjectName n = new ObjectName(PREFIX + "(" + this.name + ")");
         if(m.isRegistered(n)) m.unregisterMBean(n); m.registerMBean(this, n);
@@ -108,13 +134,72 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
     @Override
     public Slot<T> release(T t) {
         final Slot<T> r = doRelease(t);
-        if(r != null) this.listeners.onRelease(r); return r;
+        if(r != null && !listeners.isEmpty()) this.listeners.onRelease(r); return r;
     }
 
     @Override
     public Slot<T> acquire(long timeout, TimeUnit unit) {
         final Slot<T> r = doAcquire(timeout, unit);
-        if(r != null) this.listeners.onAcquire(r); return r;
+        if(r != null && !listeners.isEmpty()) this.listeners.onAcquire(r); return r;
+    }
+
+    @Override
+    public CompletableFuture<Slot<T>> acquireAsync(long timeout, TimeUnit unit) {
+        final CompletableFuture<Slot<T>> r = doAcquireAsync(timeout, unit); if (listeners.isEmpty()) return r;
+        r.thenAccept(v -> { if(v != null) this.listeners.onAcquire(v); }); return r;
+    }
+
+    @Override
+    public List<Slot<T>> release(Collection<T> t) {
+        final List<Slot<T>> r = doRelease(t); if (listeners.isEmpty()) return r;
+        for (Slot<T> v : r) this.listeners.onRelease(v); return r;
+    }
+
+    @Override
+    public List<Slot<T>> acquire(int n, long timeout, TimeUnit unit, boolean partial) {
+        if (n < 0) throw new IllegalArgumentException("n: " + n); if (n == 0) return new ArrayList<>(0);
+        final List<Slot<T>> r = doAcquire(n, timeout, unit);
+        if(r.size() < n && !partial) { for (Slot<T> v : r) doRelease(v.get()); r.clear(); }
+        if(!listeners.isEmpty()) for (Slot<T> v : r) this.listeners.onAcquire(v); return r;
+    }
+
+    /**
+     * Gives back a busy slot that failed validation without notifying listeners,
+     * released (and validated again) unless overridden
+     */
+    protected void doAbandon(final Slot<T> v) {
+        doRelease(v.get());
+    }
+
+    /**
+     * Async, blocks a common pool thread unless overridden, a slot acquired after the
+     * future is cancelled or completed is released back
+     */
+    protected CompletableFuture<Slot<T>> doAcquireAsync(long timeout, TimeUnit unit) {
+        final Slot<T> v = doAcquire(0L, unit); if (v != null || timeout <= 0L) return completedFuture(v);
+        final CompletableFuture<Slot<T>> r = new CompletableFuture<>(); CompletableFuture.runAsync(() -> {
+            try { final Slot<T> x = doAcquire(timeout, unit); if (!r.complete(x) && x != null) doRelease(x.get()); }
+            catch (Throwable e) { r.completeExceptionally(e); }
+        }); return r;
+    }
+
+    /**
+     * Batch, subclasses may amortise the cost across the batch
+     */
+    protected List<Slot<T>> doRelease(Collection<T> t) {
+        final List<Slot<T>> r = new ArrayList<>(t.size());
+        for (T v : t) { final Slot<T> x = doRelease(v); if (x != null) r.add(x); } return r;
+    }
+
+    protected List<Slot<T>> doAcquire(int n, long timeout, TimeUnit unit) {
+        final List<Slot<T>> r = new ArrayList<>(n); doAcquire(r, n, timeout, unit); return r;
+    }
+
+    protected void doAcquire(List<Slot<T>> r, int n, long timeout, TimeUnit unit) {
+        for (long d = nanoTime() + unit.toNanos(timeout); r.size() < n; ) {
+            final Slot<T> v = doAcquire(Math.max(d - nanoTime(), 0L), NANOSECONDS);
+            if (v == null) return; /* timeout or interrupted */ else r.add(v);
+        }
     }
 
     /**
@@ -138,8 +223,32 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
     }
 
     protected boolean consume(final T item) {
-        final Consumer<T> consumer = pool.getConfig().getConsumer();
-        if (consumer != null) consumer.accept(item); return consumer != null;
+        final PoolConfig<T> v = pool.getConfig();
+        if (v.getFactory() == null && v.getConsumer() == null) return false; consumeAsync(item); return true;
+    }
+
+    protected Void doConsume(final T item) {
+        final Consumer<T> v = pool.getConfig().getConsumer(); if (v == null) return null;
+        try { v.accept(item); } catch (Throwable e) { LOGGER.error("[" + name + "]failed to destroy object: " + item, e); } return null;
+    }
+
+    /**
+     * Async, completed in place unless {@link PoolConfig#getFactory()} is present
+     */
+    protected CompletionStage<T> supplyAsync() {
+        final PoolFactory<T> v = pool.getConfig().getFactory(); if (v != null) return v.create();
+        final CompletableFuture<T> r = new CompletableFuture<>();
+        try { r.complete(supply()); } catch (Throwable e) { r.completeExceptionally(e); } return r;
+    }
+
+    /**
+     * Never completes exceptionally, the failure of destruction is logged
+     */
+    protected CompletionStage<Void> consumeAsync(final T item) {
+        final PoolFactory<T> v = pool.getConfig().getFactory(); if (v == null) return completedFuture(doConsume(item));
+        return v.destroy(item).handle((x, e) -> {
+            if (e != null) LOGGER.error("[" + name + "]failed to destroy object: " + item, e); return null;
+        });
     }
 
     protected boolean validate(final T item) {
@@ -150,13 +259,24 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
     /**
      *
      */
-    protected static final boolean isTimeout(final long time, long timeout) {
-        return ((timeout > 0) && (time + timeout < System.currentTimeMillis()));
+    protected final long now() {
+        return this.clock.millis();
     }
 
-    protected static final boolean isEquals(Identity<?> a, final Object b) {
-        if(a == b) return true; else if(a == null || b == null) return false;
-        return b instanceof Identity ? a.item == ((Identity<?>) b).item : false;
+    protected final boolean isTimeout(final long time, long timeout) {
+        return ((timeout > 0) && (time + timeout < now()));
+    }
+
+    protected static AtomicReferenceArray<Object> newCookies(final Cookie<?> k) {
+        return new AtomicReferenceArray<>(Math.max(Cookie.count(), k.getIndex() + 1)); /* sized on the first set */
+    }
+
+    protected static <V> V getCookieAt(final AtomicReferenceArray<Object> a, final Cookie<V> k, final Slot<?> slot) {
+        final int i = k.getIndex(); return i < a.length() ? Objects.cast(a.get(i)) : slot.getCookie((Object) k);
+    }
+
+    protected static <V> V setCookieAt(final AtomicReferenceArray<Object> a, final Cookie<V> k, V v, final Slot<?> slot) {
+        final int i = k.getIndex(); return Objects.cast(i < a.length() ? a.getAndSet(i, v) : slot.setCookie((Object) k, v));
     }
 
     protected static final boolean isEquals(final Slot<?> a, final Object b) {
@@ -174,7 +294,8 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
 
     protected boolean isAcquirable(final Slot<T> r) {
         if(r == null || !r.isAlive() || r.isExpired() || r.isRetired()) return false;
-        return (getConfig().getValidation().isAcquireEnabled() ? r.isValid() : true);
+        if(!getConfig().getValidation().isAcquireEnabled()) return true;
+        return r.isFresh(getConfig().getFreshness()) || r.isValid(); /* validated recently */
     }
 
     protected boolean isReleasable(final Slot<T> r) {
@@ -182,16 +303,6 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
         return (getConfig().getValidation().isReleaseEnabled() ? r.isValid() : true);
     }
 
-    /**
-     *
-     */
-    protected static class Identity<T> {
-        public static <T> Identity<T> id(T item) { return new Identity<>(item); }
-        @Override public int hashCode() { return System.identityHashCode(item); }
-        @Override public boolean equals(Object rhs) { return isEquals(this, rhs); }
-        protected final T item; public Identity(final T item) { this.item = item; }
-    }
-
     /**
      *
      */
@@ -200,21 +311,28 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
         protected final T item;
         protected final long id = sequence.getAndIncrement();
         protected final AtomicReference<Status> status = new AtomicReference<>(IDLE);
-        protected volatile long create = System.currentTimeMillis(), access = this.create;
+        protected volatile long validated; /* last successful validation */
+        protected volatile long create = now(), access = this.create;
         protected final ConcurrentMap<Object, Object> cookies = new ConcurrentHashMap<>();
+        protected volatile AtomicReferenceArray<Object> values; /* created on the first set */
 
         //
         public SlotImpl (T item) { this.item = item; }
         @Override public T get() { return this.item; }
         @Override public long getId() { return this.id; }
+        @Override public long getCreateTime() { return this.create; }
+        @Override public long getAccessTime() { return this.access; }
         @Override public int hashCode() { return Long.hashCode(this.id); }
         @Override public String toString() { return Strings.buildEx(this); }
         @Override public boolean equals(Object rhs) { return isEquals(this, rhs); }
         @Override public <V> V getCookie(Object k) { return Objects.cast(this.cookies.get(k)); }
         @Override public Object setCookie(Object k, Object v) { return this.cookies.put(k, v); }
+        @Override public <V> V getCookie(Cookie<V> k) { final AtomicReferenceArray<Object> a = values; return a == null ? getCookie((Object) k) : getCookieAt(a, k, this); }
+        @Override public <V> V setCookie(Cookie<V> k, V v) { if (values == null) VALUES.compareAndSet(this, null, newCookies(k)); return setCookieAt(values, k, v, this); }
 
         //
-        @Override public boolean isValid() { return validate(this.item); }
+        @Override public boolean isFresh(long v) { return v > 0 && !isTimeout(validated, v); }
+        @Override public boolean isValid() { boolean r = validate(item); if (r) validated = now(); return r; }
         @Override public boolean isBusy () { return this.status.get() == Status.BUSY; }
         @Override public boolean isIdle () { return this.status.get() == Status.IDLE; }
         @Override public boolean isAlive() { return this.status.get() != Status.GONE; }
@@ -223,10 +341,89 @@ public abstract class AbstractAllocator<T> extends Lifecyclet implements PoolAll
         @Override public boolean isExpired() { return isTimeout(access, getConfig().getTti()); }
 
         //
-        @Override public void touch() { this.access = System.currentTimeMillis(); }
+        @Override public void touch() { this.access = now(); }
         @Override public boolean acquire() { boolean r = status.compareAndSet(IDLE, BUSY); if (r) touch(); return r; }
         @Override public boolean release() { boolean r = status.compareAndSet(BUSY, IDLE); if (r) touch(); return r; }
         @Override public boolean abandon() { boolean r = status.compareAndSet(BUSY, GONE); if (r) touch(); return r; }
         @Override public boolean destroy() { boolean r = status.compareAndSet(IDLE, GONE); if (r) touch(); return r; }
     }
+
+    /**
+     * Compact, status and access time are packed into one word, the cookie map and
+     * array are created on their first set.
+     * <pre>
+     * | status : 2 | access time - create time : 62 |
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    protected static class CompactSlot<T> implements Slot<T> {
+        //
+        protected static final Status[] STATUS = Status.values();
+        protected static final int STATUS_SHIFT = 62;
+        protected static final long ACCESS_MASK = (1L << STATUS_SHIFT) - 1L;
+        protected static final AtomicLongFieldUpdater<CompactSlot> STATE = AtomicLongFieldUpdater.newUpdater(CompactSlot.class, "state");
+        protected static final AtomicReferenceFieldUpdater<CompactSlot, ConcurrentMap> COOKIES = newUpdater(CompactSlot.class, ConcurrentMap.class, "cookies");
+        protected static final AtomicReferenceFieldUpdater<CompactSlot, AtomicReferenceArray> VALUES = newUpdater(CompactSlot.class, AtomicReferenceArray.class, "values");
+
+        //
+        protected final T item;
+        protected final long id, create;
+        protected volatile long state, validated;
+        protected volatile ConcurrentMap<Object, Object> cookies;
+        protected volatile AtomicReferenceArray<Object> values;
+        protected final AbstractAllocator<T> allocator;
+
+        //
+        public CompactSlot(AbstractAllocator<T> allocator, T item) {
+            this.allocator = allocator; this.item = item; this.create = allocator.now();
+            this.id = allocator.sequence.getAndIncrement(); this.state = ((long) IDLE.ordinal()) << STATUS_SHIFT;
+        }
+
+        //
+        @Override public T get() { return this.item; }
+        @Override public long getId() { return this.id; }
+        @Override public long getCreateTime() { return this.create; }
+        @Override public int hashCode() { return Long.hashCode(this.id); }
+        @Override public String toString() { return Strings.buildEx(this); }
+        @Override public boolean equals(Object rhs) { return isEquals(this, rhs); }
+        @Override public long getAccessTime() { return this.create + (this.state & ACCESS_MASK); }
+        @Override public <V> V getCookie(Object k) { final Map<Object, Object> v = cookies; return v == null ? null : Objects.cast(v.get(k)); }
+        @Override public Object setCookie(Object k, Object v) { if (cookies == null) COOKIES.compareAndSet(this, null, new ConcurrentHashMap<>(4)); return cookies.put(k, v); }
+        @Override public <V> V getCookie(Cookie<V> k) { final AtomicReferenceArray<Object> a = values; return a == null ? getCookie((Object) k) : getCookieAt(a, k, this); }
+        @Override public <V> V setCookie(Cookie<V> k, V v) { if (values == null) VALUES.compareAndSet(this, null, newCookies(k)); return setCookieAt(values, k, v, this); }
+
+        //
+        @Override public boolean isBusy () { return status(this.state) == BUSY; }
+        @Override public boolean isIdle () { return status(this.state) == IDLE; }
+        @Override public boolean isAlive() { return status(this.state) != GONE; }
+        @Override public boolean isValid() { boolean r = allocator.validate(item); if (r) validated = allocator.now(); return r; }
+        @Override public boolean isFresh(long v) { return v > 0 && !allocator.isTimeout(validated, v); }
+        @Override public boolean isLeaked(long v) { return isBusy() && allocator.isTimeout(getAccessTime(), v); }
+        @Override public boolean isRetired() { return allocator.isTimeout(create, allocator.getConfig().getTtl()); }
+        @Override public boolean isExpired() { return allocator.isTimeout(getAccessTime(), allocator.getConfig().getTti()); }
+
+        //
+        @Override public boolean acquire() { return transit(IDLE, BUSY); }
+        @Override public boolean release() { return transit(BUSY, IDLE); }
+        @Override public boolean abandon() { return transit(BUSY, GONE); }
+        @Override public boolean destroy() { return transit(IDLE, GONE); }
+        @Override public void touch() { for (long s = state; !STATE.compareAndSet(this, s, pack(status(s))); s = state); }
+
+        /**
+         *
+         */
+        protected static Status status(final long s) {
+            return STATUS[(int) (s >>> STATUS_SHIFT)];
+        }
+
+        protected boolean transit(final Status from, final Status to) {
+            for (long s = state; status(s) == from; s = state) if (STATE.compareAndSet(this, s, pack(to))) return true;
+            return false;
+        }
+
+        protected long pack(final Status status) {
+            final long a = Math.min(Math.max(allocator.now() - create, 0L), ACCESS_MASK); /* saturated */
+            return ((long) status.ordinal()) << STATUS_SHIFT | a;
+        }
+    }
 }
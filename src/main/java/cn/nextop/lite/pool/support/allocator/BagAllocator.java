@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator;
+import cn.nextop.lite.pool.support.PoolAllocatorFactory;
+import cn.nextop.lite.pool.support.allocator.ThreadAllocator.Local;
+import cn.nextop.lite.pool.support.allocator.allocation.AbstractAllocationQueue;
+import cn.nextop.lite.pool.support.allocator.allocation.BagAllocationQueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static cn.nextop.lite.pool.util.Concurrents.isVirtual;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Concurrent bag allocator: idle slots are kept in a shared copy-on-write list and
+ * claimed by CAS, each thread remembers the slots it released recently, and a released
+ * slot is handed off directly to a waiting acquirer through the exchanger.
+ * Allocation order is decided by thread affinity, {@code PoolConfig.fifo} is ignored.
+ *
+ * @author Baoyi Chen
+ * @param <T>
+ */
+public class BagAllocator<T> extends DefaultAllocator<T> {
+	//
+	protected static final int LOCALS = 16;
+
+	//
+	protected final ThreadLocal<Local<T>> local;
+
+	/**
+	 *
+	 */
+	public BagAllocator(Pool<T> pool, String name) {
+		super(pool, name); this.local = ThreadLocal.withInitial(() -> new Local<>(LOCALS));
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	protected Slot<T> doRelease(T item) {
+		final Slot<T> r = super.doRelease(item); if (r == null || isVirtual()) return r;
+		this.local.get().set(r); /* no allocation if recently released */ return r;
+	}
+
+	@Override
+	protected Slot<T> doAcquire(long timeout, TimeUnit unit) {
+		final Slot<T> r = acquire(); if (r != null) return r;
+		return super.doAcquire(timeout, unit); /* shared slots, then wait for a hand-off */
+	}
+
+	@Override
+	protected CompletableFuture<Slot<T>> doAcquireAsync(long timeout, TimeUnit unit) {
+		final Slot<T> r = acquire(); if (r != null) return completedFuture(r);
+		return super.doAcquireAsync(timeout, unit);
+	}
+
+	/**
+	 * Slots released by this thread, most recent first
+	 */
+	protected Slot<T> acquire() {
+		if (isVirtual()) return null; final Local<T> list = this.local.get();
+		for (int i = 0, n = list.size(); i < n; i++) {
+			final Slot<T> v = list.get(i); if (v == null || !dequeue(v)) continue;
+			if (isAcquirable(v)) { if (v.acquire()) return v; }
+			else if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
+		}
+		return null;
+	}
+
+	@Override
+	protected AbstractAllocationQueue<T> newQueue() {
+		return new BagAllocationQueue<>(pool);
+	}
+
+	/**
+	 *
+	 */
+	public static class Factory<T> implements PoolAllocatorFactory<T> {
+		@Override public final PoolAllocator<T> create(final Pool<T> v) {
+			String n = v.getName() + ".allocator.bag"; return new BagAllocator<>(v, n);
+		}
+	}
+}
@@ -19,28 +19,53 @@ package cn.nextop.lite.pool.support.allocator;
 import cn.nextop.lite.pool.Pool;
 import cn.nextop.lite.pool.glossary.Lifecyclet;
 import cn.nextop.lite.pool.support.PoolAllocator;
+import cn.nextop.lite.pool.support.PoolAllocator.Cookie;
 import cn.nextop.lite.pool.support.PoolAllocatorFactory;
+import cn.nextop.lite.pool.support.allocator.allocation.AbstractAllocationQueue;
+import cn.nextop.lite.pool.support.allocator.allocation.AllocationExchanger;
+import cn.nextop.lite.pool.support.allocator.allocation.AllocationExchanger.Waiter;
 import cn.nextop.lite.pool.support.allocator.allocation.AllocationQueue;
+import cn.nextop.lite.pool.support.allocator.allocation.ConcurrentAllocationQueue;
 import cn.nextop.lite.pool.util.Concurrents;
 import cn.nextop.lite.pool.util.DateTimes;
+import cn.nextop.lite.pool.util.concurrent.ConcurrentIdentityHashMap;
+import cn.nextop.lite.pool.util.concurrent.StripedCounter;
+import cn.nextop.lite.pool.util.concurrent.TimerWheel;
 import cn.nextop.lite.pool.util.concurrent.executor.XExecutorService;
+import cn.nextop.lite.pool.util.concurrent.executor.XThreadPoolExecutor;
+import cn.nextop.lite.pool.util.concurrent.thread.XThreadFactory;
 import cn.nextop.lite.pool.util.scheduler.impl.executor.ExecutorJob;
 import cn.nextop.lite.pool.util.scheduler.impl.executor.ExecutorScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 import static cn.nextop.lite.pool.PoolEvent.leakage;
-import static cn.nextop.lite.pool.support.allocator.AbstractAllocator.Identity.id;
-import static cn.nextop.lite.pool.util.Assertion.assertTrue;
 import static cn.nextop.lite.pool.util.concurrent.executor.XExecutors.create;
+import static cn.nextop.lite.pool.util.scheduler.impl.executor.ExecutorTrigger.delay;
 import static cn.nextop.lite.pool.util.scheduler.impl.executor.ExecutorTrigger.fixDelay;
+import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.lang.System.nanoTime;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * @author Baoyi Chen
@@ -51,16 +76,26 @@ public class DefaultAllocator<T> extends AbstractAllocator<T> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultAllocator.class);
 	
 	//
-	protected static final String LEAKAGE = "$LEAKAGE";
+	protected static final int SLICES = 8;
+	protected static final Cookie<Boolean> LEAKAGE = new Cookie<>("$LEAKAGE");
+	protected static final Cookie<TimerWheel.Entry<?>> TIMER = new Cookie<>("$TIMER");
+	protected static final ThreadLocal<Queue<Runnable>> TRAMPOLINE = new ThreadLocal<>();
 	
 	//
-	protected AllocationQueue<T> queue;
+	protected AbstractAllocationQueue<T> queue;
+	protected final AllocationExchanger<T> exchanger;
 	protected final XExecutorService executor;
+	protected final XThreadPoolExecutor destroyer;
+	protected volatile boolean stopping; /* creations may complete late */
+	protected int cursor, ticks; protected volatile long elapsed; /* pulse */
 	protected final ExecutorScheduler scheduler;
-	protected final Map<Identity<T>, Slot<T>> slots;
+	protected TimerWheel<Slot<T>> wheel; /* ttl and tti */
+	protected final ConcurrentIdentityHashMap<T, Slot<T>> slots;
 	protected final AtomicInteger size = new AtomicInteger(0);
-	protected final AtomicInteger idle = new AtomicInteger(0);
-	protected final AtomicInteger wait = new AtomicInteger(0);
+	protected final AtomicInteger creating = new AtomicInteger(0);
+	protected final AtomicLong tickets = new AtomicLong(0L);
+	protected final StripedCounter idle = new StripedCounter();
+	protected final StripedCounter wait = new StripedCounter();
 
 	/**
 	 *
@@ -68,30 +103,41 @@ public class DefaultAllocator<T> extends AbstractAllocator<T> {
 	@Override public int getEntireCount () { return size.get(); }
 	@Override public int getRestingCount() { return idle.get(); }
 	@Override public int getPendingCount() { return wait.get(); }
-	@Override public int getWorkingCount() { return size.get() - idle.get(); }
+	@Override public int getWorkingCount() { return size.get() - getRestingCount(); }
+	@Override public long getPulseTime() { return this.elapsed; }
+	@Override public int getDestroyingCount() { return destroyer.getQueue().size() + destroyer.getActiveCount(); }
 
 	/**
 	 * 
 	 */
 	public DefaultAllocator(Pool<T> pool, String name) {
-		super(pool, name); executor = create(name + ".executor", 1);
-		slots = new ConcurrentHashMap<>(getConfig().getMaximum() << 2);
+		super(pool, name); final int n = Math.max(getConfig().getConcurrency(), 1);
+		this.executor = create(name + ".executor", n); /* parallel supply */
+		this.destroyer = newDestroyer(name + ".destroyer", Math.max(getConfig().getMaximum(), 1));
+		final int spins = getConfig().getSpins(), yields = getConfig().getYields();
+		this.exchanger = new AllocationExchanger<>(spins, yields);
+		slots = new ConcurrentIdentityHashMap<>(getConfig().getMaximum());
 		start(scheduler = new ExecutorScheduler(name + ".scheduler", 1));
 	}
 
 	@Override
 	protected void doStart() throws Exception {
-		super.doStart(); this.queue = new AllocationQueue<>(this.pool);
+		super.doStart(); this.queue = newQueue(); /* the clock is started */
+		this.wheel = new TimerWheel<>(Math.max(getConfig().getInterval() / SLICES, 1L), 64, now());
+		if (getConfig().isPrefill()) prefill();
 		scheduler.schedule(new ExecutorJob(name + ".pulse", this::pulse,
-		fixDelay(0L, getConfig().getInterval(), TimeUnit.MILLISECONDS)));
+		fixDelay(0L, Math.max(getConfig().getInterval() / SLICES, 1L), TimeUnit.MILLISECONDS)));
 	}
 	
 	@Override
 	protected long doStop(long timeout, TimeUnit unit) throws Exception {
-		timeout = Lifecyclet.stopQuietly(this.scheduler, timeout, unit);
+		this.stopping = true; timeout = Lifecyclet.stopQuietly(this.scheduler, timeout, unit);
 		timeout = Concurrents.terminateQuietly(this.executor, timeout, unit);
-		for(Slot<T> v : slots.values()) { del(v); dequeue(v); consume(v.get()); }
-		return super.doStop(timeout, unit);
+		final List<CompletableFuture<Void>> r = new ArrayList<>(); // Destroy in place, wait for the factory
+		for(Slot<T> v : slots.values()) if (del(v)) { dequeue(v); r.add(super.consumeAsync(v.get()).toCompletableFuture()); }
+		final long mark = nanoTime(); try { allOf(r.toArray(new CompletableFuture<?>[0])).get(timeout, unit); } catch (TimeoutException e) { }
+		timeout = Concurrents.sub(timeout, unit.convert(nanoTime() - mark, NANOSECONDS));
+		return super.doStop(Concurrents.terminateQuietly(this.destroyer, timeout, unit), unit);
 	}
 	
 	/**
@@ -100,81 +146,171 @@ public class DefaultAllocator<T> extends AbstractAllocator<T> {
 	@Override
 	protected Slot<T> doRelease(T item) {
 		//
-		final Identity<T> id = id(item);
-		final Slot<T> r = slots.get(id); if(r == null) { return null; }
+		final Slot<T> r = slots.get(item); if(r == null) { return null; }
 		
 		//
-		r.setCookie(LEAKAGE, Boolean.FALSE);
+		if (r.getCookie(LEAKAGE) == TRUE) r.setCookie(LEAKAGE, FALSE); /* read mostly */
 		if(isReleasable(r)) { if(r.release()){ enqueue(r); return r; }}
-		else if(r.abandon() && del(r)) { consume(r.get()); expand(1); }
-		return null;
+		else doAbandon(r); return null;
+	}
+	
+	@Override
+	protected void doAbandon(final Slot<T> v) {
+		if(v.abandon() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
 	}
 	
 	@Override
 	protected Slot<T> doAcquire(long timeout, TimeUnit unit) {
-		this.wait.incrementAndGet();
+		this.wait.increment();
 		try {
 			expand(1);
-			long n = nanoTime(), t = unit.toNanos(timeout), i = 200L;
+			long n = nanoTime(), t = unit.toNanos(timeout);
 			for ( ; t >= 0L; t -= (nanoTime() - n), n = nanoTime()) {
-				final Slot<T> v = dequeue(Math.min(t, i), TimeUnit.NANOSECONDS);
+				final Slot<T> v = dequeue(t, TimeUnit.NANOSECONDS);
 				if (v == null) continue; /* timeout */
 				else if (isAcquirable(v)) { if(v.acquire()) return v; }
-				else if (v.destroy() && del(v)) { consume(v.get()); expand(1); }
+				else if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
 			}
 			return null;
 		} catch (InterruptedException t) { Thread.currentThread().interrupt(); }
-		finally { assertTrue((this.wait.decrementAndGet() >= 0)); } return null;
+		finally { this.wait.decrement(); } return null;
 	}
 	
+	/**
+	 * Async, the request waits in the exchanger instead of parking a thread
+	 */
+	@Override
+	protected CompletableFuture<Slot<T>> doAcquireAsync(long timeout, TimeUnit unit) {
+		final AsyncAcquire r = new AsyncAcquire(); this.wait.increment(); r.whenComplete(r);
+		expand(1); r.next(); if (!r.isDone()) r.schedule(timeout, unit); return r;
+	}
+
+	/**
+	 * Batch, idle slots are polled and offered under one queue operation
+	 */
+	@Override
+	protected List<Slot<T>> doRelease(Collection<T> items) {
+		final List<Slot<T>> r = new ArrayList<>(items.size());
+		for (final T item : items) {
+			final Slot<T> v = slots.get(item); if (v == null) continue;
+			if (v.getCookie(LEAKAGE) == TRUE) v.setCookie(LEAKAGE, FALSE);
+			if (isReleasable(v)) { if (v.release()) r.add(v); }
+			else doAbandon(v);
+		}
+		enqueue(r); return r;
+	}
+
+	@Override
+	protected List<Slot<T>> doAcquire(int n, long timeout, TimeUnit unit) {
+		final List<Slot<T>> r = new ArrayList<>(n), idle = new ArrayList<>(n); dequeue(idle, n);
+		for (final Slot<T> v : idle) {
+			if (isAcquirable(v)) { if (v.acquire()) r.add(v); }
+			else if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
+		}
+		doAcquire(r, n, timeout, unit); /* wait for the rest one by one */ return r;
+	}
+
+	@Override
+	protected void doAcquire(List<Slot<T>> r, int n, long timeout, TimeUnit unit) {
+		for (long d = nanoTime() + unit.toNanos(timeout); r.size() < n; ) {
+			final Slot<T> v; final int k = n - r.size() - 1; this.wait.add(k); // The rest is pending as well
+			try { expand(k); v = doAcquire(Math.max(d - nanoTime(), 0L), NANOSECONDS); } finally { this.wait.add(-k); }
+			if (v == null) return; /* timeout or interrupted */ else r.add(v);
+		}
+	}
+
 	/**
 	 *
 	 */
-	protected boolean isExpandable() {
+	protected AbstractAllocationQueue<T> newQueue() {
+		final boolean lockfree = getConfig().isLockfree();
+		return lockfree ? new ConcurrentAllocationQueue<>(pool) : new AllocationQueue<>(pool);
+	}
+
+	protected boolean isExpandable(final int creating) {
 		final int min = getConfig().getMinimum();
 		final int max = getConfig().getMaximum();
-		if (this.size.get() >= max) return false;
-		return (this.idle.get() < min || this.wait.get() > this.size.get());
+		if (this.size.get() + creating >= max) return false; final int n = getRestingCount() + creating;
+		return (n < min || this.wait.get() > n); /* waiters outnumber idle and incoming objects */
 	}
 	
-	protected int shrink() {
+	protected int shrink(final List<Slot<T>> slice) {
 		int r = getConfig().getMinimum();
-		for (Slot<T> v : this.slots.values()) {
+		for (Slot<T> v : slice) {
 			if(isPulsable(v)) continue;
 			if(v.destroy() && del(v)) { dequeue(v); consume(v.get()); r++; }
 		}
 		return r;
 	}
 	
+	/**
+	 * Objects being created count as resting, so a burst of n waiters creates n objects at once
+	 */
+	protected boolean reserve() {
+		for (int c; isExpandable(c = creating.get()); ) if (creating.compareAndSet(c, c + 1)) return true;
+		return false;
+	}
+
 	protected void expand(int n) {
-		for(int i = 0; i < n; i++) {
-			if (isExpandable()) this.executor.execute(() -> {
-				try {
-					if(!isExpandable()) return; final T t = supply();
-					Slot<T> slot = wrap(t); add(slot); enqueue(slot);
-				} catch (Throwable root) {
-					LOGGER.error("[" + name + "]failed to expand pool", root);
-				}
-			});
-		}
+		for(int i = 0; i < n && reserve(); i++) this.executor.execute(this::produce);
+	}
+
+	protected CompletionStage<Void> produce() {
+		return supplyAsync().handle((t, root) -> {
+			boolean reserved = true;
+			try {
+				if (root != null) throw root; final Slot<T> slot = wrap(t); add(slot);
+				reserved = false; this.creating.decrementAndGet(); schedule(slot); /* before the hand-off */
+				if (!stopping) enqueue(slot); else if (del(slot)) consume(t); return null;
+			} catch (Throwable e) {
+				LOGGER.error("[" + name + "]failed to expand pool", e); return null;
+			} finally {
+				if (reserved) this.creating.decrementAndGet();
+			}
+		});
+	}
+
+	protected void prefill() throws Exception {
+		final List<CompletableFuture<Void>> r = new ArrayList<>(); // Block until minimum is reached, or timeout
+		while (reserve()) r.add(CompletableFuture.supplyAsync(this::produce, executor).thenCompose(v -> v));
+		try { allOf(r.toArray(new CompletableFuture<?>[0])).get(getConfig().getTimeout(), MILLISECONDS); }
+		catch (TimeoutException e) { LOGGER.warn("[{}]prefill timed out, total: {}", name, size.get()); }
+	}
+
+	/**
+	 * The destroyer is bounded, a caller destroys the object itself once its backlog is full
+	 */
+	@Override
+	protected CompletionStage<Void> consumeAsync(final T item) {
+		if (getConfig().getFactory() != null) return super.consumeAsync(item); /* non-blocking */
+		return CompletableFuture.runAsync(() -> doConsume(item), this.destroyer);
+	}
+
+	protected static XThreadPoolExecutor newDestroyer(final String name, final int backlog) {
+		final BlockingQueue<Runnable> q = new ArrayBlockingQueue<>(backlog); final ThreadFactory f = new XThreadFactory(name);
+		final XThreadPoolExecutor r = new XThreadPoolExecutor(name, 1, 1, 60L, SECONDS, q, f, (v, e) -> v.run());
+		r.allowCoreThreadTimeOut(true); return r; /* runs in the caller if full or terminated */
 	}
 	
 	/**
-	 *
+	 * Incremental, each tick visits a slice of the slots, all of them once per interval
 	 */
 	protected void pulse() {
 		//
 		final long mark = System.nanoTime();
 		final boolean verbose = getConfig().isVerbose();
+		final List<Slot<T>> slice = new ArrayList<>(); // rotating cursor
+		this.cursor = slots.scan(cursor, (size.get() + SLICES - 1) / SLICES, slice);
 		try {
-			expand(shrink());
+			this.wheel.advance(now(), this::evict);
+			expand(shrink(slice)); if (getValidation().isBackgroundEnabled()) revalidate(slice);
 		} catch (Throwable root) {
 			LOGGER.error("[" + name + "]failed to pulse pool", root);
 		}
 
 		// Leak?
 		final long tenancy = getConfig().getTenancy();
-		if(tenancy > 0) for(Slot<T> v : this.slots.values()) {
+		if(tenancy > 0) for(Slot<T> v : slice) {
 			if(!v.isLeaked(tenancy)) continue;
 			if((TRUE == v.setCookie(LEAKAGE, TRUE))) continue;
 			if(verbose) LOGGER.warn("[{}]leak slot: {}", name, v);
@@ -182,33 +318,162 @@ public class DefaultAllocator<T> extends AbstractAllocator<T> {
 		}
 		
 		//
-		if (!verbose) { return; } final long et = nanoTime() - mark;
-		final int v1 = size.get(), v2 = idle.get(), v3 = wait.get();
+		final long et = this.elapsed = nanoTime() - mark; if (!verbose || ++ticks % SLICES != 0) return;
+		final int v1 = size.get(), v2 = getRestingCount(), v3 = wait.get();
 		final Object[] args = new Object[] {this.name, v1, v2, v3, DateTimes.toMillis(et)};
 		LOGGER.info("[{}]pulse, total: {}, idle: {}, wait: {}, elapsed time: {} ms", args);
 	}
 	
+	/**
+	 * Expiry, each slot has one timer due at its earliest ttl or tti deadline, which is
+	 * re-armed on firing if the slot was accessed since, and cancelled once it is deleted
+	 */
+	protected void schedule(final Slot<T> v) {
+		final long ttl = getConfig().getTtl(), tti = getConfig().getTti(); long r = Long.MAX_VALUE;
+		if (ttl > 0) r = v.getCreateTime() + ttl; if (tti > 0) r = Math.min(r, v.getAccessTime() + tti);
+		if (r != Long.MAX_VALUE) schedule(v, r);
+	}
+
+	protected void schedule(final Slot<T> v, final long deadline) {
+		final TimerWheel.Entry<?> r = wheel.schedule(v, deadline); v.setCookie(TIMER, r); if (!v.isAlive()) r.cancel();
+	}
+
+	protected void evict(final Slot<T> v) {
+		if (!v.isAlive()) return; else if (!v.isExpired() && !v.isRetired()) { schedule(v); return; }
+		if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); return; }
+		final long tti = getConfig().getTti(); /* busy, retired is destroyed on release */
+		if (v.isAlive() && tti > 0) schedule(v, now() + tti); /* idle for tti after release at the earliest */
+	}
+
+	/**
+	 * Stale idle slots are revalidated by the executor, at most concurrency of them at once
+	 */
+	protected void revalidate(final List<Slot<T>> slice) {
+		final long window = getConfig().getFreshness();
+		for (Slot<T> v : slice) if (v.isIdle() && !v.isFresh(window)) this.executor.execute(() -> revalidate(v));
+	}
+
+	protected void revalidate(final Slot<T> v) {
+		if (!dequeue(v)) return; /* acquired in the meantime */
+		if (v.isValid()) { if (v.isIdle()) enqueue(v); return; } /* else acquired by its thread local */
+		if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
+	}
+
 	/**
 	 * 
 	 */
 	protected boolean add(final Slot<T> v) {
-		boolean r = slots.put(id(v.get()), v) == null; if (r) size.incrementAndGet(); return r;
+		boolean r = slots.put(v.get(), v) == null; if (r) size.incrementAndGet(); return r;
 	}
 	
 	protected boolean del(final Slot<T> v) {
-		boolean r = slots.remove(id(v.get())) == v; if(r) { size.decrementAndGet(); } return r;
+		boolean r = slots.remove(v.get(), v); if(!r) return false; size.decrementAndGet();
+		final TimerWheel.Entry<?> t = v.setCookie(TIMER, null); if (t != null) t.cancel(); return true;
 	}
 	
 	protected boolean enqueue(Slot<T> slot) {
-		final boolean r = this.queue.offer(slot); if (r) this.idle.incrementAndGet(); return r;
+		if (this.exchanger.transfer(slot)) return true; /* hand-off */
+		final boolean r = this.queue.offer(slot); if (r) this.idle.increment();
+		// A waiter registered after the transfer, take the slot back to hand it off
+		if (r && !exchanger.isEmpty() && dequeue(slot)) return enqueue(slot); return r;
+	}
+	
+	protected int enqueue(List<Slot<T>> slots) {
+		int i = 0, r = 0; final int n = slots.size(); // Hand off to the waiters first
+		for (; i < n && !exchanger.isEmpty(); i++) if (enqueue(slots.get(i))) r++; if (i == n) return r;
+		final List<Slot<T>> rest = slots.subList(i, n); final int v = queue.offer(rest); idle.add(v);
+		for (Slot<T> x : rest) { if (exchanger.isEmpty()) break; if (dequeue(x)) enqueue(x); } return r + v;
+	}
+	
+	protected int dequeue(List<Slot<T>> to, int max) {
+		final int r = this.queue.poll(to, max); if (r > 0) this.idle.add(-r); return r;
 	}
 	
 	protected boolean dequeue(Slot<T> slot) {
-		final boolean r = this.queue.remove(slot); if(r) this.idle.decrementAndGet(); return r;
+		final boolean r = this.queue.remove(slot); if(r) this.idle.decrement(); return r;
+	}
+	
+	protected Slot<T> dequeue() {
+		final Slot<T> r = this.queue.poll(); if (r != null) this.idle.decrement(); return r;
 	}
 	
 	protected Slot<T> dequeue(long t, TimeUnit unit) throws InterruptedException {
-		final Slot<T> r = queue.poll(t, unit); if (r != null) idle.decrementAndGet(); return r;
+		Slot<T> r = dequeue(); if (r != null) return r; /* fast path */
+		final Waiter<T> w = this.exchanger.register(); // then re-check the queue
+		if ((r = dequeue()) == null) return exchanger.await(w, unit.toNanos(t));
+		final Slot<T> v = exchanger.cancel(w); if (v != null) enqueue(v); return r;
+	}
+
+	/**
+	 * 
+	 */
+	protected class AsyncAcquire extends CompletableFuture<Slot<T>> implements Runnable, BiConsumer<Slot<T>, Throwable> {
+		//
+		protected volatile Waiter<T> waiter;
+		protected volatile boolean expired;
+		protected final String id = name + ".acquire." + tickets.incrementAndGet();
+
+		/**
+		 * Timeout
+		 */
+		@Override
+		public void run() {
+			this.expired = true; complete(null);
+		}
+
+		protected void schedule(long timeout, TimeUnit unit) {
+			if (timeout <= 0L) { complete(null); return; } /* no wait */
+			scheduler.schedule(new ExecutorJob(id, this, delay(timeout, unit)));
+			if (isDone()) scheduler.unschedule(id); /* completed meanwhile */
+		}
+
+		@Override
+		public void accept(Slot<T> v, Throwable t) {
+			try { wait.decrement(); if (!expired) scheduler.unschedule(id); }
+			finally { final Waiter<T> w = this.waiter; if (w != null) exchanger.cancel(w); }
+		}
+
+		/**
+		 * Acquire from the queue, or register and wait for a hand-off
+		 */
+		protected void next() {
+			while (!isDone()) {
+				Slot<T> v = dequeue(); if (v == null) {
+					final Waiter<T> w = this.waiter = exchanger.register(new AsyncWaiter(this));
+					if ((v = dequeue()) == null) { if (isDone()) exchanger.cancel(w); return; }
+					if (exchanger.cancel(w) != null) { enqueue(v); return; } /* already handed off */
+				}
+				if (acquire(v)) return;
+			}
+		}
+
+		/**
+		 * Callbacks that release a slot would hand it off recursively, so completions
+		 * on the same thread are queued and run by the outermost one
+		 */
+		protected void done(final Slot<T> v) {
+			Queue<Runnable> q = TRAMPOLINE.get(); if (q != null) { q.offer(() -> fire(v)); return; }
+			TRAMPOLINE.set(q = new ArrayDeque<>());
+			try { fire(v); for (Runnable r; (r = q.poll()) != null; ) r.run(); } finally { TRAMPOLINE.remove(); }
+		}
+
+		protected void fire(final Slot<T> v) {
+			if (!complete(v) && v.release()) enqueue(v); /* timeout or cancelled meanwhile */
+		}
+
+		protected boolean acquire(final Slot<T> v) {
+			if (isDone()) { enqueue(v); return true; } /* timeout or cancelled */
+			if (isAcquirable(v)) { if (v.acquire()) { done(v); return true; } }
+			else if (v.destroy() && del(v)) { dequeue(v); consume(v.get()); expand(1); }
+			return false;
+		}
+	}
+
+	protected class AsyncWaiter extends Waiter<T> {
+		//
+		protected final AsyncAcquire acquire;
+		public AsyncWaiter(AsyncAcquire v) { super(null); this.acquire = v; }
+		@Override protected boolean offer(Slot<T> v) { if (!super.offer(v)) return false; if (!acquire.acquire(v)) acquire.next(); return true; }
 	}
 
 	/**
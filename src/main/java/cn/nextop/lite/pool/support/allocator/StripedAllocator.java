@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator;
+import cn.nextop.lite.pool.support.PoolAllocatorFactory;
+import cn.nextop.lite.pool.support.allocator.allocation.AbstractAllocationQueue;
+import cn.nextop.lite.pool.support.allocator.allocation.StripedAllocationQueue;
+
+/**
+ * Default allocator whose idle slots are striped across several allocation queues by
+ * the releasing thread. The entire count and the slot map are pool-wide but are only
+ * written on creation and destruction, the resting and pending counts are striped.
+ *
+ * @author Baoyi Chen
+ * @param <T>
+ */
+public class StripedAllocator<T> extends DefaultAllocator<T> {
+	//
+	protected final int shards;
+
+	/**
+	 *
+	 */
+	public StripedAllocator(Pool<T> pool, String name, int shards) {
+		super(pool, name); this.shards = shards;
+	}
+
+	@Override
+	protected AbstractAllocationQueue<T> newQueue() {
+		return new StripedAllocationQueue<>(pool, shards, super::newQueue);
+	}
+
+	/**
+	 *
+	 */
+	public static class Factory<T> implements PoolAllocatorFactory<T> {
+		//
+		private final int shards;
+		public Factory() { this(Runtime.getRuntime().availableProcessors()); }
+		public Factory(final int shards) { this.shards = shards; }
+
+		//
+		@Override public final PoolAllocator<T> create(final Pool<T> v) {
+			String n = v.getName() + ".allocator.striped"; return new StripedAllocator<>(v, n, shards);
+		}
+	}
+}
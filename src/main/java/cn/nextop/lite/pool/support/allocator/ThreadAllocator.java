@@ -20,18 +20,54 @@ import cn.nextop.lite.pool.Pool;
 import cn.nextop.lite.pool.glossary.Lifecyclet;
 import cn.nextop.lite.pool.support.PoolAllocator;
 import cn.nextop.lite.pool.support.PoolAllocatorFactory;
+import cn.nextop.lite.pool.util.Objects;
+import cn.nextop.lite.pool.util.concurrent.StripedCounter;
+import cn.nextop.lite.pool.util.concurrent.thread.FastThreadLocal;
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static cn.nextop.lite.pool.util.Concurrents.isVirtual;
+import static java.lang.System.nanoTime;
 
 /**
+ * Caches the last {@link cn.nextop.lite.pool.PoolConfig#getLocals()} released slots of
+ * each thread, the cache is an indexed slot of {@link FastThreadLocal.Aware} threads
+ * (e.g. created by XThreadFactory) and a plain thread local of other threads.
+ * A cached slot stays in the parent's idle queue, so other threads steal it from the
+ * parent when the pool is starved and an object is never stranded in a thread.
+ * All allocators share one {@link FastThreadLocal}, each takes an index of its table
+ * while running and gives it back on stop.
+ *
  * @author Jingqi Xu
  * @param <T>
  */
 public class ThreadAllocator<T> extends AbstractAllocator<T> {
 	//
+	protected static final AtomicLong ID = new AtomicLong();
+	protected static final AtomicInteger INDEX = new AtomicInteger();
+	protected static final Queue<Integer> FREE = new ConcurrentLinkedQueue<>();
+	protected static final FastThreadLocal<Local<?>[]> LOCALS = new FastThreadLocal<>("thread.allocator");
+	
+	//
+	protected final long id;
+	protected final int locals;
+	protected volatile int index = -1;
 	protected PoolAllocator<T> parent;
-	protected final ThreadLocal<WeakReference<Slot<T>>> local;
+	protected final StripedCounter hits = new StripedCounter();
+	protected final StripedCounter empties = new StripedCounter();
+	protected final StripedCounter steals = new StripedCounter();
+	protected final StripedCounter invalids = new StripedCounter();
+	protected final StripedCounter fallbacks = new StripedCounter();
+	protected final StripedCounter elapsed = new StripedCounter(); /* ns */
 	
 	//
 	public PoolAllocator<T> getParent() { return parent; }
@@ -44,21 +80,33 @@ public class ThreadAllocator<T> extends AbstractAllocator<T> {
 	@Override public int getRestingCount() { return parent.getRestingCount(); }
 	@Override public int getWorkingCount() { return parent.getWorkingCount(); }
 	@Override public int getPendingCount() { return parent.getPendingCount(); }
+	@Override public int getDestroyingCount() { return parent.getDestroyingCount(); }
+	@Override public long getPulseTime() { return parent.getPulseTime(); }
+	@Override public long getLocalHitCount() { return this.hits.sum(); }
+	@Override public long getLocalEmptyCount() { return this.empties.sum(); }
+	@Override public long getLocalStolenCount() { return this.steals.sum(); }
+	@Override public long getLocalInvalidCount() { return this.invalids.sum(); }
+	@Override public long getFallbackCount() { return this.fallbacks.sum(); }
+	@Override public long getFallbackTime() { final long n = fallbacks.sum(); return n == 0L ? 0L : elapsed.sum() / n; }
+	@Override public long getLocalMissCount() { return empties.sum() + steals.sum() + invalids.sum(); }
 
 	/**
 	 * 
 	 */
 	public ThreadAllocator(Pool<T> pool, String name) {
-		super(pool, name); this.local = new ThreadLocal<>();
+		super(pool, name); this.id = ID.incrementAndGet();
+		this.locals = Math.max(pool.getConfig().getLocals(), 1);
 	}
 	
 	@Override
 	protected void doStart() throws Exception {
 		super.doStart(); Lifecyclet.start(this.parent);
+		final Integer v = FREE.poll(); this.index = v != null ? v : INDEX.getAndIncrement();
 	}
 	
 	@Override
 	protected long doStop(long timeout, TimeUnit unit) throws Exception {
+		final int v = this.index; this.index = -1; if (v >= 0) FREE.offer(v); /* reused */
 		return super.doStop(stopQuietly(parent, timeout, unit), unit);
 	}
 	
@@ -67,16 +115,98 @@ public class ThreadAllocator<T> extends AbstractAllocator<T> {
 	 */
 	@Override
 	protected Slot<T> doRelease(T t) {
-		Slot<T> r = this.parent.release(t); if(r == null) return null;
-		this.local.set(new WeakReference<>(r)); /* thread */ return r;
+		Slot<T> r = this.parent.release(t); if(r == null || isVirtual()) return r;
+		final Local<T> local = local(); if (local != null) local.set(r); /* thread */ return r;
 	}
 	
 	@Override
 	protected Slot<T> doAcquire(long timeout, TimeUnit unit) {
-		WeakReference<Slot<T>> guard = this.local.get();
-		if(guard == null) this.local.set((guard = new WeakReference<>(null)));
-		Slot<T> r = guard.get(); if (isAcquirable(r) && r.acquire()) return r;
-		return parent.acquire(timeout, unit); // Delegate to parent to acquire
+		final Slot<T> r = acquire(); if (r != null) return r; final long t = nanoTime();
+		try { return parent.acquire(timeout, unit); } finally { fallback(t); } // Delegate to parent to acquire
+	}
+	
+	@Override
+	protected CompletableFuture<Slot<T>> doAcquireAsync(long timeout, TimeUnit unit) {
+		final Slot<T> r = acquire(); if (r != null) return CompletableFuture.completedFuture(r); final long t = nanoTime();
+		final CompletableFuture<Slot<T>> f = parent.acquireAsync(timeout, unit); f.whenComplete((v, e) -> fallback(t)); return f;
+	}
+	
+	protected void fallback(final long time) {
+		this.fallbacks.increment(); this.elapsed.add(nanoTime() - time);
+	}
+	
+	/**
+	 * A miss is counted as stolen if a cached slot is busy, taken by another thread
+	 * or still held by this one, else invalid if a cached slot is not acquirable.
+	 * Only the acquired candidate is validated, it is destroyed by the parent without
+	 * notifying listeners when it fails, then the parent is used.
+	 */
+	protected Slot<T> acquire() {
+		if (isVirtual()) return null; /* no affinity for virtual threads */
+		StripedCounter miss = this.empties; final Local<T> local = local(); if (local == null) return null;
+		for (int i = 0, n = local.size(); i < n; i++) {
+			final Slot<T> r = local.get(i); if (r == null) continue;
+			if (r.isBusy()) { miss = steals; continue; } else if (!r.isAlive()) { if (miss == empties) miss = invalids; continue; }
+			if (!r.acquire()) { miss = steals; continue; } /* raced */ else if (isAcquirable(r)) { this.hits.increment(); return r; }
+			abandon(r); if (miss == empties) miss = invalids; break; /* validated once at most */
+		}
+		miss.increment(); return null;
+	}
+	
+	/**
+	 * An index given back on stop may be taken by another allocator, the owner's id
+	 * tells the locals of a stopped allocator apart and they are simply replaced.
+	 */
+	protected void abandon(final Slot<T> v) {
+		if (parent instanceof AbstractAllocator) ((AbstractAllocator<T>) parent).doAbandon(v); else parent.release(v.get());
+	}
+	
+	protected Local<T> local() {
+		final int i = this.index; if (i < 0) return null; /* stopped */ Local<?>[] a = LOCALS.get();
+		if (a == null) LOCALS.set(a = new Local<?>[Math.max(i + 1, 4)]);
+		else if (i >= a.length) LOCALS.set(a = Arrays.copyOf(a, Math.max(a.length << 1, i + 1)));
+		Local<?> r = a[i]; if (r == null || r.owner != id) a[i] = r = new Local<>(locals, id); return Objects.cast(r);
+	}
+	
+	@Override
+	protected List<Slot<T>> doRelease(Collection<T> t) {
+		return this.parent.release(t); /* batches bypass the thread local slot */
+	}
+	
+	@Override
+	protected List<Slot<T>> doAcquire(int n, long timeout, TimeUnit unit) {
+		return this.parent.acquire(n, timeout, unit, true);
+	}
+	
+	/**
+	 * Reused by its thread, a ring of weak references searched from the latest inserted,
+	 * a weak reference is only renewed when a slot not cached yet replaces the eldest.
+	 * A single slot (the default) is kept in one weak reference without a ring.
+	 */
+	protected static final class Local<T> {
+		//
+		private int next;
+		private final long owner;
+		private WeakReference<Slot<T>> slot;
+		private final WeakReference<Slot<T>>[] slots; /* null if single */
+		
+		//
+		public Local(int n) { this(n, 0L); }
+		public Local(int n, long owner) { this.owner = owner; this.slots = n <= 1 ? null : Objects.cast(new WeakReference<?>[n]); }
+		
+		//
+		public int size() { return this.slots == null ? 1 : this.slots.length; }
+		
+		public Slot<T> get(int i) {
+			if (slots == null) { final WeakReference<Slot<T>> v = this.slot; return v == null ? null : v.get(); }
+			final int n = slots.length; final WeakReference<Slot<T>> v = slots[(next - 1 - i + n) % n]; return v == null ? null : v.get();
+		}
+		
+		public void set(final Slot<T> slot) {
+			if (slots == null) { final WeakReference<Slot<T>> v = this.slot; if (v == null || v.get() != slot) this.slot = new WeakReference<>(slot); return; }
+			for (WeakReference<Slot<T>> v : slots) if (v != null && v.get() == slot) return; /* cached */
+			this.slots[next] = new WeakReference<>(slot); this.next = (next + 1) % slots.length;
+		}
 	}
 	
 	/**
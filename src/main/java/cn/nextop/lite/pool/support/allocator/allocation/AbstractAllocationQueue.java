@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+
+import java.util.List;
+
+/**
+ * Idle slots of an allocator, ordered by {@link cn.nextop.lite.pool.PoolConfig#isFifo()}.
+ * Offering a slot that is already queued is suppressed and returns false, a slot
+ * must be removed once it is destroyed so that its entry can be released. A queue never
+ * blocks, waiters are parked by the allocator's {@link AllocationExchanger}.
+ *
+ * @author Baoyi Chen
+ */
+public abstract class AbstractAllocationQueue<T> {
+	//
+	protected final Pool<T> pool;
+	protected final boolean fifo;
+
+	//
+	public abstract int size();
+	public abstract boolean exists(Slot<T> slot);
+	public abstract boolean remove(Slot<T> slot);
+	public abstract boolean offer(Slot<T> slot);
+	public abstract Slot<T> poll(); /* non-blocking */
+
+	/**
+	 *
+	 */
+	protected AbstractAllocationQueue(Pool<T> pool) {
+		this.pool = pool; this.fifo = pool.getConfig().isFifo();
+	}
+
+	/**
+	 * Batch, subclasses may offer or poll the whole batch at once
+	 */
+	public int offer(final List<Slot<T>> slots) {
+		int r = 0; for (Slot<T> v : slots) if (offer(v)) r++; return r;
+	}
+
+	public int poll(final List<Slot<T>> to, final int max) {
+		int r = 0; for (Slot<T> v; r < max && (v = poll()) != null; r++) to.add(v); return r;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+import cn.nextop.lite.pool.util.Objects;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static cn.nextop.lite.pool.util.Concurrents.isVirtual;
+import static java.lang.System.nanoTime;
+
+/**
+ * Hands released slots directly to waiting acquirers, the longest waiting first.
+ * A waiter optionally spins and yields before it parks until a slot is handed off.
+ * A waiter must re-check the allocation queue after {@link #register()}, and a
+ * releaser must re-check {@link #isEmpty()} after offering to the queue.
+ *
+ * @author Baoyi Chen
+ */
+public class AllocationExchanger<T> {
+	//
+	protected static final Object CANCELLED = new Object();
+
+	//
+	protected final int spins, yields;
+	protected final Queue<Waiter<T>> waiters = new ConcurrentLinkedQueue<>();
+
+	/**
+	 *
+	 */
+	public AllocationExchanger() {
+		this(0, 0);
+	}
+
+	/**
+	 * @param spins busy checks before yielding
+	 * @param yields yielding checks before parking
+	 */
+	public AllocationExchanger(int spins, int yields) {
+		this.spins = Math.max(spins, 0); this.yields = Math.max(yields, 0);
+	}
+
+	/**
+	 *
+	 */
+	public boolean isEmpty() {
+		return this.waiters.isEmpty();
+	}
+
+	public Waiter<T> register() {
+		return register(new Waiter<>(Thread.currentThread()));
+	}
+
+	public Waiter<T> register(final Waiter<T> waiter) {
+		this.waiters.offer(waiter); return waiter; /* waiter without thread is never parked */
+	}
+
+	public boolean transfer(final Slot<T> slot) {
+		for (Waiter<T> v = waiters.poll(); v != null; v = waiters.poll()) if (v.offer(slot)) return true;
+		return false;
+	}
+
+	/**
+	 * @return the slot handed off to the waiter before it was cancelled, or null
+	 */
+	public Slot<T> cancel(final Waiter<T> waiter) {
+		if (waiter.cancel()) { this.waiters.remove(waiter); return null; } return waiter.get();
+	}
+
+	public Slot<T> await(final Waiter<T> waiter, long nanos) throws InterruptedException {
+		final long d = nanoTime() + nanos; // Spin, then yield, then park
+		final int n = isVirtual() ? 0 : spins + yields; /* parking unmounts a virtual thread */
+		for (int i = 0; i < n && nanos > 0L; i++, nanos = d - nanoTime()) {
+			final Slot<T> r = waiter.get(); if (r != null) return r; if (i >= spins) Thread.yield();
+		}
+		for ( ; nanos > 0L; nanos = d - nanoTime()) {
+			final Slot<T> r = waiter.get(); if (r != null) return r;
+			LockSupport.parkNanos(this, nanos); if (!Thread.interrupted()) continue;
+			final Slot<T> v = cancel(waiter); if (v == null) throw new InterruptedException();
+			Thread.currentThread().interrupt(); return v; /* keep the slot handed off */
+		}
+		return cancel(waiter);
+	}
+
+	/**
+	 * Subclasses may override {@link #offer(Slot)} to consume the slot asynchronously
+	 */
+	public static class Waiter<T> {
+		//
+		protected final Thread thread;
+		protected final AtomicReference<Object> slot = new AtomicReference<>();
+
+		//
+		public Waiter(final Thread thread) { this.thread = thread; }
+		protected boolean cancel() { return this.slot.compareAndSet(null, CANCELLED); }
+		public Slot<T> get() { final Object r = slot.get(); return r == CANCELLED ? null : Objects.cast(r); }
+		protected boolean offer(Slot<T> v) { if (!slot.compareAndSet(null, v)) return false; LockSupport.unpark(thread); return true; }
+	}
+}
@@ -18,37 +18,26 @@ package cn.nextop.lite.pool.support.allocator.allocation;
 
 import cn.nextop.lite.pool.Pool;
 import cn.nextop.lite.pool.support.PoolAllocator.Slot;
-import cn.nextop.lite.pool.util.Assertion;
-import cn.nextop.lite.pool.util.Comparators;
 import cn.nextop.lite.pool.util.LongHashMap;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static cn.nextop.lite.pool.util.Assertion.assertTrue;
-import static cn.nextop.lite.pool.util.Comparators.cmp;
-
 /**
+ * Indexed doubly-linked deque, offer, poll and remove are all O(1).
+ * Each slot keeps its entry in the index until removed, so re-offering does not allocate.
+ *
  * @author Baoyi Chen
  */
-public class AllocationQueue<T> {
+public class AllocationQueue<T> extends AbstractAllocationQueue<T> {
 	//
-	protected long sequence = 0L;
-	protected final Pool<T> pool;
-	protected final boolean fifo;
+	protected int size = 0;
+	protected Entry<T> head, tail;
 	protected final ReadWriteLock lock;
-	protected final List<Entry<T>> values;
-	protected final Condition notFull, notEmpty;
 	protected final LongHashMap<Entry<T>> index;
-	protected final Comparator<Entry<T>> comparator = new FifoComparator();
 
 	/**
 	 *
@@ -59,29 +48,24 @@ public class AllocationQueue<T> {
 
 	public AllocationQueue(Pool<T> pool, boolean fair) {
 		//
-		this.pool = pool; this.fifo = pool.getConfig().isFifo();
+		super(pool);
 		final int v = Math.min(Math.max(pool.getConfig().getMaximum(), 32), 256);
-		this.values = new ArrayList<>(v); this.index = new LongHashMap<>(v << 1);
+		this.index = new LongHashMap<>(v << 1);
 
 		//
-		lock = new ReentrantReadWriteLock(fair); Lock write = lock.writeLock();
-		this.notFull = write.newCondition(); this.notEmpty = write.newCondition();
+		this.lock = new ReentrantReadWriteLock(fair);
 	}
 
 	/**
 	 *
 	 */
+	@Override
 	public boolean remove(final Slot<T> slot) {
 		Objects.requireNonNull(slot);
 		final Lock lock = this.lock.writeLock(); lock.lock();
 		try {
-			//
-			Entry<T> v = index.remove(slot.getId()); if((v == null)) return false;
-			int index = Collections.binarySearch(this.values, v, this.comparator);
-
-			//
-			assertTrue((index >= 0)); this.values.remove(index); notFull.signal();
-			Assertion.assertTrue(this.index.size() == values.size()); return true;
+			Entry<T> v = index.remove(slot.getId()); if(v == null || !v.linked) return false;
+			unlink(v); /* O(1) */ return true;
 		} finally {
 			lock.unlock();
 		}
@@ -90,6 +74,7 @@ public class AllocationQueue<T> {
 	/**
 	 *
 	 */
+	@Override
 	public boolean offer(final Slot<T> slot) {
 		//
 		Objects.requireNonNull(slot);
@@ -101,13 +86,27 @@ public class AllocationQueue<T> {
 		final Lock lock = this.lock.writeLock(); lock.lock();
 		try {
 			//
-			long id = slot.getId(); if((this.index.containsKey(id))) return false;
-			final long seq = ++this.sequence; Entry<T> n = new Entry<>(slot, seq);
+			final long id = slot.getId(); Entry<T> v = this.index.get(id);
+			if(v == null) this.index.put(id, v = new Entry<>(slot)); else if(v.linked) return false;
 
 			//
-			if((fifo)) values.add(0, n); /* head */ else values.add(n); /* tail */
-			this.index.put(id, n); /* unique, unbounded */ this.notEmpty.signal();
-			Assertion.assertTrue(this.index.size() == values.size()); return true;
+			if((fifo)) linkFirst(v); /* head */ else linkLast(v); /* tail */
+			return true; /* unique, unbounded */
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int offer(final List<Slot<T>> slots) {
+		final Lock lock = this.lock.writeLock(); lock.lock();
+		try {
+			int r = 0; for (final Slot<T> slot : slots) {
+				final long id = slot.getId(); Entry<T> v = this.index.get(id);
+				if(v == null) this.index.put(id, v = new Entry<>(slot)); else if(v.linked) continue;
+				if((fifo)) linkFirst(v); /* head */ else linkLast(v); /* tail */ r++;
+			}
+			return r;
 		} finally {
 			lock.unlock();
 		}
@@ -116,19 +115,23 @@ public class AllocationQueue<T> {
 	/**
 	 *
 	 */
-	public Slot<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
-		long nanos = unit.toNanos(timeout);
-		final Lock lock = this.lock.writeLock(); lock.lockInterruptibly();
+	@Override
+	public Slot<T> poll() {
+		final Lock lock = this.lock.writeLock(); lock.lock();
 		try {
-			//
-			while (this.values.size() == 0) {
-				if (nanos < 0) return null; nanos = this.notEmpty.awaitNanos(nanos);
-			}
+			final Entry<T> v = this.tail; if (v == null) return null;
+			unlink(v); return v.slot; // tail
+		} finally {
+			lock.unlock();
+		}
+	}
 
-			//
-			final Entry<T> v = this.values.remove((this.values.size() - 1)); // tail
-			final long id = v.slot.getId(); this.index.remove(id); notFull.signal();
-			Assertion.assertTrue(this.index.size() == values.size()); return v.slot;
+	@Override
+	public int poll(final List<Slot<T>> to, final int max) {
+		final Lock lock = this.lock.writeLock(); lock.lock();
+		try {
+			int r = 0; for (Entry<T> v; r < max && (v = this.tail) != null; r++) { unlink(v); to.add(v.slot); }
+			return r;
 		} finally {
 			lock.unlock();
 		}
@@ -137,31 +140,41 @@ public class AllocationQueue<T> {
 	/**
 	 *
 	 */
+	@Override
 	public int size() {
 		final Lock lock = this.lock.readLock(); lock.lock();
-		try { return this.values.size(); } finally { lock.unlock(); }
+		try { return this.size; } finally { lock.unlock(); }
 	}
 
+	@Override
 	public boolean exists(Slot<T> slot) {
 		final Lock lock = this.lock.readLock(); lock.lock();
-		try { return (this.index.containsKey(slot.getId())); } finally { lock.unlock(); }
+		try { Entry<T> v = index.get(slot.getId()); return v != null && v.linked; } finally { lock.unlock(); }
 	}
 
 	/**
 	 *
 	 */
-	protected static class Entry<E> {
-		protected final Slot<E> slot; protected final long sequence;
-		public Entry(final Slot<E> v, final long w) { this.slot = v; this.sequence = w; }
+	protected void linkFirst(final Entry<T> v) {
+		final Entry<T> h = this.head; v.prev = null; v.next = h; v.linked = true;
+		if(h == null) this.tail = v; else h.prev = v; this.head = v; this.size++;
+	}
+
+	protected void linkLast(final Entry<T> v) {
+		final Entry<T> t = this.tail; v.next = null; v.prev = t; v.linked = true;
+		if(t == null) this.head = v; else t.next = v; this.tail = v; this.size++;
+	}
+
+	protected void unlink(final Entry<T> v) {
+		final Entry<T> p = v.prev, n = v.next; v.prev = v.next = null; v.linked = false;
+		if(p == null) head = n; else p.next = n; if(n == null) tail = p; else n.prev = p; size--;
 	}
 
 	/**
 	 *
 	 */
-	protected class FifoComparator implements Comparator<Entry<T>> {
-		@Override public final int compare(Entry<T> v1, Entry<T> v2) {
-			boolean asc = !fifo; int r = cmp(v1.sequence, v2.sequence, asc); if((r != 0)) return r;
-			return Comparators.cmp(v1.slot.getId(), v2.slot.getId(), asc); // should not reach here
-		}
+	protected static class Entry<E> {
+		protected final Slot<E> slot; protected boolean linked; protected Entry<E> prev, next;
+		public Entry(final Slot<E> v) { this.slot = v; }
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bag of slots, each slot owns one entry in a shared copy-on-write list from its first
+ * offer until it is removed after being destroyed, removing a live slot only claims
+ * its entry by CAS. The list is scanned in creation order, so
+ * {@link cn.nextop.lite.pool.PoolConfig#isFifo()} is ignored.
+ *
+ * @author Baoyi Chen
+ */
+public class BagAllocationQueue<T> extends AbstractAllocationQueue<T> {
+	//
+	protected final AtomicInteger size;
+	protected final List<Entry<T>> values;
+	protected final ConcurrentMap<Slot<T>, Entry<T>> index;
+
+	/**
+	 *
+	 */
+	public BagAllocationQueue(Pool<T> pool) {
+		//
+		super(pool); this.size = new AtomicInteger(0);
+		final int v = Math.min(Math.max(pool.getConfig().getMaximum(), 32), 256);
+		this.index = new ConcurrentHashMap<>(v << 1); this.values = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean remove(final Slot<T> slot) {
+		Objects.requireNonNull(slot);
+		final Entry<T> v = this.index.get(slot); if(v == null) return false;
+		final boolean r = v.unlink(); if(r) this.size.decrementAndGet(); // Claimed
+		if(!slot.isAlive() && index.remove(slot, v)) this.values.remove(v); /* destroyed */ return r;
+	}
+
+	@Override
+	public boolean offer(final Slot<T> slot) {
+		//
+		Objects.requireNonNull(slot);
+		Entry<T> v = this.index.get(slot); if(v == null) {
+			final Entry<T> n = new Entry<>(slot); v = index.putIfAbsent(slot, n);
+			if(v == null) { v = n; values.add(n); if(index.get(slot) != n) values.remove(n); } /* removed meanwhile */
+		}
+
+		//
+		if(!v.link()) return false; /* duplicated */ this.size.incrementAndGet();
+		if(index.get(slot) != v && v.unlink()) { this.size.decrementAndGet(); return false; } return true;
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public Slot<T> poll() {
+		if(this.size.get() <= 0) return null; /* nothing linked, skip the scan */
+		for(Entry<T> v : this.values) if(v.unlink()) { this.size.decrementAndGet(); return v.slot; }
+		return null;
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+
+	@Override
+	public boolean exists(Slot<T> slot) {
+		final Entry<T> v = this.index.get(slot); return v != null && v.linked.get();
+	}
+
+	/**
+	 *
+	 */
+	protected static class Entry<E> {
+		//
+		protected final Slot<E> slot;
+		protected final AtomicBoolean linked = new AtomicBoolean(false);
+
+		//
+		public Entry(final Slot<E> v) { this.slot = v; }
+		public boolean link() { return this.linked.compareAndSet(false, true); }
+		public boolean unlink() { return this.linked.compareAndSet(true, false); }
+	}
+}
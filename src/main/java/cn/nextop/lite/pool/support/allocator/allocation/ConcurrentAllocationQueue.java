@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free allocation queue, each offer links a fresh node which the index maps the
+ * slot to, a node is only taken by whoever removes that exact mapping. Removed nodes
+ * are skipped by poll and purged once they outnumber the queued ones, so that a
+ * destroyed slot is never retained by a pool which always keeps idle slots.
+ *
+ * @author Baoyi Chen
+ */
+public class ConcurrentAllocationQueue<T> extends AbstractAllocationQueue<T> {
+	//
+	protected final AtomicInteger size;
+	protected final AtomicInteger garbage;
+	protected final Deque<Node<T>> values;
+	protected final ConcurrentMap<Slot<T>, Node<T>> index;
+
+	/**
+	 *
+	 */
+	public ConcurrentAllocationQueue(Pool<T> pool) {
+		//
+		super(pool); this.size = new AtomicInteger(0); this.garbage = new AtomicInteger(0);
+		final int v = Math.min(Math.max(pool.getConfig().getMaximum(), 32), 256);
+		this.index = new ConcurrentHashMap<>(v << 1); this.values = new ConcurrentLinkedDeque<>();
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean remove(final Slot<T> slot) {
+		Objects.requireNonNull(slot);
+		final Node<T> v = this.index.remove(slot); if(v == null) return false;
+		v.slot = null; this.size.decrementAndGet(); purge(); /* lazily */ return true;
+	}
+
+	@Override
+	public boolean offer(final Slot<T> slot) {
+		//
+		Objects.requireNonNull(slot);
+		final Node<T> v = new Node<>(slot);
+		if(index.putIfAbsent(slot, v) != null) return false; /* duplicated */ this.size.incrementAndGet();
+		if((fifo)) values.offerFirst(v); /* head */ else values.offerLast(v); /* tail */ return true;
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public Slot<T> poll() {
+		for(Node<T> v = values.pollLast(); v != null; v = values.pollLast()) { // tail
+			final Slot<T> r = v.slot; if(r == null || !index.remove(r, v)) continue; /* removed */
+			v.slot = null; this.size.decrementAndGet(); return r;
+		}
+		return null;
+	}
+
+	protected void purge() {
+		final int n = this.garbage.incrementAndGet(); if(n <= (size.get() << 1) + 32) return;
+		if(this.garbage.compareAndSet(n, 0)) this.values.removeIf(v -> v.slot == null); /* amortized */
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+
+	@Override
+	public boolean exists(Slot<T> slot) {
+		return this.index.containsKey(slot);
+	}
+
+	/**
+	 *
+	 */
+	protected static class Node<E> {
+		//
+		protected volatile Slot<E> slot; /* null once taken or removed */
+
+		//
+		public Node(final Slot<E> v) { this.slot = v; }
+	}
+}
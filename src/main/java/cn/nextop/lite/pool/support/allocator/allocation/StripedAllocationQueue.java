@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.support.PoolAllocator.Cookie;
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+import cn.nextop.lite.pool.util.Objects;
+
+import java.util.function.Supplier;
+
+/**
+ * Partitions slots across shards by the releasing thread, a thread polls its own shard
+ * first, so it gets back the slots it released, then steals from the sibling shards in
+ * turn. Each slot remembers its shard, so duplicate suppression and removal stay exact,
+ * and the size is the sum of the per-shard counts. Allocation order is only kept
+ * within each shard.
+ *
+ * @author Baoyi Chen
+ */
+public class StripedAllocationQueue<T> extends AbstractAllocationQueue<T> {
+	//
+	protected static final Cookie<Integer> SHARD = new Cookie<>("$SHARD");
+
+	//
+	protected final AbstractAllocationQueue<T>[] shards;
+
+	/**
+	 *
+	 */
+	public StripedAllocationQueue(Pool<T> pool, int n, Supplier<AbstractAllocationQueue<T>> factory) {
+		super(pool); if (n <= 0) throw new IllegalArgumentException("shards: " + n);
+		this.shards = Objects.cast(new AbstractAllocationQueue<?>[n]);
+		for (int i = 0; i < n; i++) this.shards[i] = factory.get();
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean remove(final Slot<T> slot) {
+		final AbstractAllocationQueue<T> v = shard(slot); return v != null && v.remove(slot);
+	}
+
+	@Override
+	public boolean offer(final Slot<T> slot) {
+		final Integer p = slot.getCookie(SHARD); final int i = probe(); if (p == null) { slot.setCookie(SHARD, i); return shards[i].offer(slot); }
+		if (p.intValue() == i || shards[p].exists(slot)) return shards[p].offer(slot); /* still queued, e.g. by its thread local */
+		shards[p].remove(slot); slot.setCookie(SHARD, i); return shards[i].offer(slot); /* moves to this thread's shard */
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public Slot<T> poll() {
+		final int n = shards.length, p = probe();
+		for (int i = 0; i < n; i++) { // Steal from siblings on miss
+			final Slot<T> r = this.shards[(p + i) % n].poll(); if (r != null) return r;
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public int size() {
+		int r = 0; for (AbstractAllocationQueue<T> v : this.shards) r += v.size(); return r;
+	}
+
+	@Override
+	public boolean exists(Slot<T> slot) {
+		final AbstractAllocationQueue<T> v = shard(slot); return v != null && v.exists(slot);
+	}
+
+	/**
+	 *
+	 */
+	protected int probe() {
+		return (int) (Thread.currentThread().getId() % this.shards.length);
+	}
+
+	protected AbstractAllocationQueue<T> shard(final Slot<T> slot) {
+		final Integer i = slot.getCookie(SHARD); return i == null ? null : this.shards[i];
+	}
+}
@@ -16,6 +16,9 @@
 
 package cn.nextop.lite.pool.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +28,8 @@ import static java.lang.Math.max;
  * @author Jingqi Xu
  */
 public final class Concurrents {
+	//
+	private static final MethodHandle IS_VIRTUAL = getIsVirtual();
 	
 	/**
 	 * 
@@ -33,6 +38,23 @@ public final class Concurrents {
 		return max(max(v1, 0) - max(v2, 0), 0);
 	}
 	
+	/**
+	 * Virtual threads are detected at runtime since the build targets 1.8
+	 */
+	public static boolean isVirtual() {
+		return isVirtual(Thread.currentThread());
+	}
+	
+	public static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) return false;
+		try { return (boolean) IS_VIRTUAL.invokeExact(thread); } catch (Throwable e) { return false; }
+	}
+	
+	private static MethodHandle getIsVirtual() {
+		final MethodType type = MethodType.methodType(boolean.class);
+		try { return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", type); } catch (Throwable e) { return null; }
+	}
+	
 	/**
 	 * 
 	 */
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.nextop.lite.pool.util.clock;
+
+import cn.nextop.lite.pool.glossary.Lifecyclet;
+import cn.nextop.lite.pool.util.concurrent.thread.XThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock read from a volatile field, which a daemon thread refreshes every precision
+ * milliseconds, 10 by default. It only moves while started, an allocator starts and stops the clock
+ * of its pool, so that one instance can be shared by several pools.
+ *
+ * @author Jingqi Xu
+ */
+public class CachedClock extends Lifecyclet implements Clock, Runnable {
+	//
+	protected static final long PRECISION = 10L;
+
+	//
+	protected final long precision;
+	protected volatile Thread thread;
+	protected volatile long millis = System.currentTimeMillis();
+	
+	/**
+	 * 
+	 */
+	public CachedClock() {
+		this(PRECISION);
+	}
+	
+	public CachedClock(long precision) {
+		this.precision = Math.max(precision, 1L);
+	}
+	
+	/**
+	 * 
+	 */
+	@Override
+	public long millis() {
+		return this.millis;
+	}
+	
+	@Override
+	protected void doStart() throws Exception {
+		this.millis = System.currentTimeMillis(); // Then refreshed by the thread
+		(this.thread = new XThreadFactory("cached.clock", true).newThread(this)).start();
+	}
+	
+	@Override
+	protected long doStop(long timeout, TimeUnit unit) throws Exception {
+		final Thread t = this.thread; this.thread = null; LockSupport.unpark(t); return timeout;
+	}
+	
+	@Override
+	public void run() {
+		final long nanos = TimeUnit.MILLISECONDS.toNanos(this.precision);
+		while (this.thread == Thread.currentThread()) { millis = System.currentTimeMillis(); LockSupport.parkNanos(this, nanos); }
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.util.concurrent;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static cn.nextop.lite.pool.util.Objects.cast;
+
+/**
+ * An identity keyed concurrent map with open addressing, keys and values are stored
+ * side by side in one array, so lookups neither wrap the key nor allocate.
+ * Reads are lock-free, writes are serialized and removed keys leave a tombstone
+ * that is dropped by the next rehash. Sized for small, bounded maps such as the
+ * slots of a pool.
+ *
+ * @author Jingqi Xu
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentIdentityHashMap<K, V> {
+	//
+	protected static final Object TOMBSTONE = new Object();
+	protected static final int MAXIMUM_CAPACITY = 1 << 29;
+
+	//
+	protected int size, used; /* used = size + tombstones */
+	protected volatile AtomicReferenceArray<Object> table;
+
+	/**
+	 * 
+	 */
+	public ConcurrentIdentityHashMap() {
+		this(16);
+	}
+
+	public ConcurrentIdentityHashMap(int capacity) {
+		if(capacity < 0)
+			throw new IllegalArgumentException("capacity: " + capacity);
+		this.table = new AtomicReferenceArray<>(getCapacity(capacity) << 1);
+	}
+
+	/**
+	 * 
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public Collection<V> values() {
+		return new Values();
+	}
+
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * 
+	 */
+	public V get(final Object key) {
+		final AtomicReferenceArray<Object> t = this.table; final int m = t.length() - 2;
+		for (int i = indexFor(key, m); ; i = (i + 2) & m) {
+			final Object k = t.get(i); if (k == null) return null;
+			if (k == key) return cast(t.get(i + 1)); /* null if being removed */
+		}
+	}
+
+	public synchronized V put(final K key, final V value) {
+		Objects.requireNonNull(key); Objects.requireNonNull(value);
+		final AtomicReferenceArray<Object> t = this.table; final int m = t.length() - 2;
+		int i = indexFor(key, m), slot = -1; for (Object k; (k = t.get(i)) != null; i = (i + 2) & m) {
+			if (k == key) { final V r = cast(t.get(i + 1)); t.set(i + 1, value); return r; }
+			if (k == TOMBSTONE && slot < 0) slot = i;
+		}
+		if (slot < 0) { slot = i; this.used++; } // Publish the value before the key
+		t.set(slot + 1, value); t.set(slot, key); this.size++; rehash(); return null;
+	}
+
+	public synchronized V remove(final Object key) {
+		final AtomicReferenceArray<Object> t = this.table; final int m = t.length() - 2;
+		for (int i = indexFor(key, m); ; i = (i + 2) & m) {
+			final Object k = t.get(i); if (k == null) return null; else if (k != key) continue;
+			final V r = cast(t.get(i + 1)); t.set(i + 1, null); t.set(i, TOMBSTONE); this.size--; return r;
+		}
+	}
+
+	public synchronized boolean remove(final Object key, final Object value) {
+		if (get(key) != value || value == null) return false; remove(key); return true;
+	}
+
+	/**
+	 * Collects at most max values from the cursor on, wrapping around at most once.
+	 * The cursor is an index of the table, entries moved by a concurrent rehash may
+	 * be missed or collected twice.
+	 *
+	 * @return the cursor to resume from
+	 */
+	public int scan(final int cursor, int max, final Collection<? super V> to) {
+		final AtomicReferenceArray<Object> t = this.table; final int m = t.length() >>> 1;
+		int i = Math.floorMod(cursor, m); for (int j = 0; j < m && max > 0; j++, i = (i + 1) % m) {
+			final Object k = t.get(i << 1); if (k == null || k == TOMBSTONE) continue;
+			final Object v = t.get((i << 1) + 1); if (v != null) { to.add(cast(v)); max--; }
+		}
+		return i;
+	}
+
+	/**
+	 * 
+	 */
+	protected void rehash() {
+		//
+		final AtomicReferenceArray<Object> t = this.table;
+		final int length = t.length(); if ((this.used << 2) < length) return; // load factor 0.5
+		final int n = (this.size << 2) < length ? length : Math.min(length << 1, MAXIMUM_CAPACITY << 1);
+
+		//
+		final AtomicReferenceArray<Object> x = new AtomicReferenceArray<>(n);
+		for (int j = 0; j < length; j += 2) {
+			final Object k = t.get(j); if (k == null || k == TOMBSTONE) continue;
+			int i = indexFor(k, n - 2); while (x.get(i) != null) i = (i + 2) & (n - 2);
+			x.set(i + 1, t.get(j + 1)); x.set(i, k);
+		}
+		this.used = this.size; this.table = x;
+	}
+
+	protected static int indexFor(final Object key, final int mask) {
+		final int h = System.identityHashCode(key); return ((h ^ (h >>> 16)) << 1) & mask;
+	}
+
+	protected static int getCapacity(int initialCapacity) {
+		int r = 2; while(r < (initialCapacity << 1) && r < MAXIMUM_CAPACITY) r <<= 1;
+		return r;
+	}
+
+	/**
+	 * Weakly consistent view over a snapshot of the table
+	 */
+	private class Values extends AbstractCollection<V> {
+
+		@Override
+		public int size() {
+			return ConcurrentIdentityHashMap.this.size();
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValueIterator(table);
+		}
+	}
+
+	private class ValueIterator implements Iterator<V> {
+		//
+		private int index = 0;
+		private Object next = null;
+		private final AtomicReferenceArray<Object> table;
+
+		/**
+		 * 
+		 */
+		ValueIterator(AtomicReferenceArray<Object> table) {
+			this.table = table; this.next = prefetch();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public V next() {
+			if (this.next == null) throw new NoSuchElementException();
+			final V r = cast(this.next); this.next = prefetch(); return r;
+		}
+
+		private Object prefetch() {
+			for (; this.index < table.length(); this.index += 2) {
+				final Object k = table.get(index); if (k == null || k == TOMBSTONE) continue;
+				final Object v = table.get(index + 1); this.index += 2; if (v != null) return v;
+			}
+			return null;
+		}
+	}
+}
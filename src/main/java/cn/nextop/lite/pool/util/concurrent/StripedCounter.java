@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.util.concurrent;
+
+/**
+ * A LongAdder-style counter striped over {@link PaddedAtomicLong} cells picked by thread id.
+ * Updates from different threads rarely share a cache line, {@link #get()} sums the cells
+ * and is not an atomic snapshot.
+ *
+ * @author Jingqi Xu
+ */
+public final class StripedCounter {
+	//
+	private static final int MAXIMUM_STRIPES = 16;
+
+	//
+	private final int mask;
+	private final PaddedAtomicLong[] cells;
+
+	/**
+	 * 
+	 */
+	public StripedCounter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public StripedCounter(int stripes) {
+		int n = 1; while (n < stripes && n < MAXIMUM_STRIPES) n <<= 1;
+		this.mask = n - 1; this.cells = new PaddedAtomicLong[n];
+		for (int i = 0; i < n; i++) this.cells[i] = new PaddedAtomicLong(0L);
+	}
+
+	/**
+	 * 
+	 */
+	public void increment() {
+		cell().incrementAndGet();
+	}
+
+	public void decrement() {
+		cell().decrementAndGet();
+	}
+
+	public void add(final long delta) {
+		cell().addAndGet(delta);
+	}
+
+	public long sum() {
+		long r = 0L; for (PaddedAtomicLong v : this.cells) r += v.get(); return r;
+	}
+
+	public int get() {
+		return (int) sum();
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+
+	/**
+	 * 
+	 */
+	private PaddedAtomicLong cell() {
+		final long id = Thread.currentThread().getId(); return cells[(int) (id ^ (id >>> 16)) & mask];
+	}
+}
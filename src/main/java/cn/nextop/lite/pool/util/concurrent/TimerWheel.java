@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.util.concurrent;
+
+import cn.nextop.lite.pool.util.Objects;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel without a thread of its own, {@link #advance(long, Consumer)}
+ * is driven by a single caller, e.g. a periodic job, while {@link #schedule(Object, long)}
+ * may be called by any thread in O(1). Entries due in a later turn of the wheel stay in
+ * their bucket, an entry fires at most one tick late. A cancelled entry drops its item
+ * at once and is itself dropped when its bucket is visited.
+ *
+ * @author Jingqi Xu
+ * @param <E>
+ */
+public class TimerWheel<E> {
+	//
+	protected final int mask;
+	protected final long tick;
+	protected long cursor; /* the next tick to expire */
+	protected final Queue<Entry<E>>[] buckets;
+	protected final Queue<Entry<E>> pending = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param tick duration of a tick, in the unit of the time passed in
+	 * @param ticks number of buckets, rounded up to a power of two
+	 */
+	public TimerWheel(long tick, int ticks, long now) {
+		if (tick <= 0) throw new IllegalArgumentException("tick: " + tick);
+		int n = 1; while (n < ticks && n < (1 << 20)) n <<= 1; this.buckets = Objects.cast(new Queue<?>[n]);
+		for (int i = 0; i < n; i++) this.buckets[i] = new ArrayDeque<>();
+		this.tick = tick; this.mask = n - 1; this.cursor = now / tick;
+	}
+
+	/**
+	 *
+	 */
+	public Entry<E> schedule(final E item, final long deadline) {
+		final Entry<E> r = new Entry<>(item, deadline); this.pending.offer(r); return r; /* bucketed by the next advance */
+	}
+
+	/**
+	 * @return the number of expired entries passed to the action
+	 */
+	public int advance(final long now, final Consumer<? super E> action) {
+		//
+		for (Entry<E> v; (v = this.pending.poll()) != null; ) {
+			if (v.isCancelled()) continue; final long t = Math.max(v.deadline / tick, cursor); this.buckets[(int) (t & mask)].offer(v);
+		}
+
+		//
+		int r = 0; final long target = now / this.tick;
+		for (int i = 0; i <= mask && cursor <= target; i++, cursor++) {
+			for (Iterator<Entry<E>> it = buckets[(int) (cursor & mask)].iterator(); it.hasNext(); ) {
+				final Entry<E> v = it.next(); final E item = v.item; if (item == null) { it.remove(); continue; }
+				if (v.deadline / tick > target) continue; /* later turn */ it.remove(); action.accept(item); r++;
+			}
+		}
+		this.cursor = Math.max(this.cursor, target + 1); return r; /* skipped a whole turn at most */
+	}
+
+	/**
+	 *
+	 */
+	public static final class Entry<E> {
+		//
+		protected volatile E item;
+		protected final long deadline;
+
+		//
+		public Entry(E item, long deadline) { this.item = item; this.deadline = deadline; }
+		public long getDeadline() { return this.deadline; }
+		public boolean isCancelled() { return this.item == null; }
+		public void cancel() { this.item = null; }
+	}
+}
@@ -89,7 +89,7 @@ public final class FastThreadLocal<T> {
 		 * 
 		 */
 		private void expand(final int index) {
-			final Object[] t = this.table; this.table = Arrays.copyOf(t, index);
+			final Object[] t = this.table; this.table = Arrays.copyOf(t, Math.max(t.length << 1, index + 1));
 		}
 		
 		/**
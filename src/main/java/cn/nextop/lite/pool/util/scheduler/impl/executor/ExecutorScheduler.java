@@ -73,7 +73,7 @@ public class ExecutorScheduler extends AbstractScheduler<ExecutorTrigger> {
 	 */
 	@Override
 	protected void doUnschedule(RunnableJob rj) throws Exception {
-		((ScheduledFuture<?>)rj.getCookie()).cancel(true);
+		final ScheduledFuture<?> f = rj.getCookie(); if(f != null) f.cancel(true); /* else by doSchedule */
 	}
 	
 	@Override
@@ -81,8 +81,9 @@ public class ExecutorScheduler extends AbstractScheduler<ExecutorTrigger> {
 		Job<ExecutorTrigger> job = rj.getJob();
 		final ExecutorTrigger t = job.getTrigger();
 		final long delay = t.getDelay(), interval = t.getInterval();
-		if(interval <= 0) {
-			rj.setCookie(this.executor.get().schedule(rj, delay, t.getTimeUnit()));
+		if(interval <= 0) { // One-shot job is removed once fired
+			final Runnable r = () -> { try { rj.run(); } finally { jobs.remove(job.getId(), rj); } };
+			rj.setCookie(this.executor.get().schedule(r, delay, t.getTimeUnit()));
 		} else {
 			final TimeUnit unit = t.getTimeUnit();
 			if(t.isFixedRate()) {
@@ -91,5 +92,8 @@ public class ExecutorScheduler extends AbstractScheduler<ExecutorTrigger> {
 				rj.setCookie(executor.get().scheduleWithFixedDelay(rj, delay, interval, unit));
 			}
 		}
+		
+		// Unscheduled before the future was set, cancel it here
+		if(jobs.get(job.getId()) != rj) ((ScheduledFuture<?>)rj.getCookie()).cancel(true);
 	}
 }
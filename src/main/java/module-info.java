@@ -11,6 +11,7 @@ module cn.nextop.lite.pool {
     exports cn.nextop.lite.pool.support.allocator.allocation;
     exports cn.nextop.lite.pool.util;
     exports cn.nextop.lite.pool.util.builder;
+    exports cn.nextop.lite.pool.util.clock;
     exports cn.nextop.lite.pool.util.concurrent;
     exports cn.nextop.lite.pool.util.concurrent.executor;
     exports cn.nextop.lite.pool.util.concurrent.future;
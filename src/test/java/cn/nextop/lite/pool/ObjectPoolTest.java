@@ -16,16 +16,36 @@
 
 package cn.nextop.lite.pool;
 
+import cn.nextop.lite.pool.support.allocator.BagAllocator;
+import cn.nextop.lite.pool.support.allocator.StripedAllocator;
+import cn.nextop.lite.pool.util.clock.ManualClock;
+import cn.nextop.lite.pool.util.concurrent.thread.FastThreadLocal;
+import cn.nextop.lite.pool.util.concurrent.thread.XThreadFactory;
 import org.junit.Test;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Baoyi Chen
@@ -62,6 +82,297 @@ public class ObjectPoolTest extends BaseTest {
         pool.stop();
     }
 
+    @Test
+    public void testLockfree() throws InterruptedException {
+        Pool<TestObject> pool = createLitePool(2, 10, 1000, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.getConfig().setLockfree(true);
+        pool.start();
+        assertExclusive(pool, 20, 1000);
+        pool.stop();
+    }
+
+    @Test
+    public void testCompact() throws InterruptedException {
+        Pool<TestObject> pool = createLitePool(2, 10, 1000, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.getConfig().setCompact(true);
+        pool.start();
+        assertExclusive(pool, 20, 1000);
+        pool.stop();
+    }
+
+    @Test
+    public void testBagAllocator() throws InterruptedException {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(() -> new TestObject()).
+                interval(15000).minimum(2).maximum(10).timeout(1000).tenancy(30000).
+                ttl(0).tti(0).allocator(new BagAllocator.Factory<>()).build("bag pool");
+        pool.start();
+        assertExclusive(pool, 20, 1000);
+        pool.stop();
+    }
+
+    @Test
+    public void testStripedAllocator() throws InterruptedException {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(() -> new TestObject()).
+                interval(15000).minimum(2).maximum(10).timeout(1000).tenancy(30000).
+                ttl(0).tti(0).allocator(new StripedAllocator.Factory<>(4)).build("striped pool");
+        pool.start();
+        assertExclusive(pool, 20, 1000);
+        pool.stop();
+    }
+
+    @Test
+    public void testStripedAffinity() throws Exception {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(() -> new TestObject()).
+                interval(15000).minimum(0).maximum(4).timeout(1000).tenancy(30000).
+                ttl(0).tti(0).allocator(new StripedAllocator.Factory<>(4)).build("striped affinity pool");
+        pool.start();
+        List<ExecutorService> threads = new ArrayList<>(); Set<Long> shards = new HashSet<>();
+        while (threads.size() < 4) { /* one thread per shard */
+            ExecutorService t = Executors.newSingleThreadExecutor();
+            if (shards.add(t.submit(() -> Thread.currentThread().getId() % 4).get())) threads.add(t); else t.shutdown();
+        }
+        try {
+            List<TestObject> held = new ArrayList<>();
+            for (ExecutorService t : threads) held.add(t.submit(() -> pool.acquire()).get());
+            for (int i = 0; i < 4; i++) { TestObject v = held.get(i); threads.get(i).submit(() -> pool.release(v)).get(); }
+            for (int i = 0; i < 4; i++) { /* each thread gets back the object it released */
+                TestObject v = threads.get(i).submit(() -> { TestObject r = pool.acquire(); pool.release(r); return r; }).get();
+                assertTrue(held.get(i) == v);
+            }
+        } finally {
+            for (ExecutorService t : threads) t.shutdown(); pool.stop();
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        Pool<TestObject> pool = createLitePool(2, 10, 200, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.start();
+        List<TestObject> a = pool.acquire(5, 1000, TimeUnit.MILLISECONDS);
+        assertEquals(5, a.size());
+        assertEquals(5, new HashSet<>(a).size());
+        assertEquals(0, pool.acquire(10, 200, TimeUnit.MILLISECONDS).size());
+        List<TestObject> b = pool.acquire(10, 200, TimeUnit.MILLISECONDS, true);
+        assertEquals(5, b.size());
+        pool.releaseAll(a);
+        pool.releaseAll(b);
+        List<TestObject> c = pool.acquire(10, 1000, TimeUnit.MILLISECONDS);
+        assertEquals(10, new HashSet<>(c).size());
+        pool.releaseAll(c);
+        assertTrue(pool.acquire(0, 1000, TimeUnit.MILLISECONDS).isEmpty());
+        try { pool.acquire(-1, 1000, TimeUnit.MILLISECONDS); fail(); } catch (IllegalArgumentException e) { }
+        pool.stop();
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        Pool<TestObject> pool = createLitePool(2, 2, 200, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.start();
+        List<TestObject> a = pool.acquire(2, 1000, TimeUnit.MILLISECONDS);
+        assertEquals(2, a.size());
+        CompletableFuture<TestObject> f1 = pool.acquireAsync(5000, TimeUnit.MILLISECONDS);
+        assertFalse(f1.isDone());
+        pool.release(a.get(0));
+        assertEquals(a.get(0), f1.get(1000, TimeUnit.MILLISECONDS));
+        assertNull(pool.acquireAsync(100, TimeUnit.MILLISECONDS).get(1000, TimeUnit.MILLISECONDS));
+        CompletableFuture<TestObject> f2 = pool.acquireAsync(5000, TimeUnit.MILLISECONDS);
+        f2.cancel(false);
+        pool.release(a.get(1));
+        pool.release(f1.get());
+        assertEquals(2, pool.acquire(2, 1000, TimeUnit.MILLISECONDS).size());
+        pool.stop();
+    }
+
+    @Test
+    public void testParallelExpansion() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(() -> {
+                    try { Thread.sleep(300); } catch (InterruptedException e) { throw new RuntimeException(e); }
+                    created.incrementAndGet(); return new TestObject();
+                }).interval(15000).minimum(4).maximum(10).timeout(2000).tenancy(30000).
+                ttl(0).tti(0).prefill(true).concurrency(10).build("parallel pool");
+        pool.start();
+        assertEquals(4, created.get());
+        ExecutorService s = Executors.newFixedThreadPool(10);
+        AtomicInteger success = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            s.submit(() -> {
+                if (pool.acquire() != null) success.incrementAndGet();
+                latch.countDown();
+            });
+        }
+        latch.await();
+        s.shutdown();
+        assertEquals(10, success.get());
+        pool.stop();
+    }
+
+    @Test
+    public void testFactory() {
+        AtomicInteger destroyed = new AtomicInteger();
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor();
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).factory(new PoolFactory<TestObject>() {
+                    @Override
+                    public CompletionStage<TestObject> create() {
+                        CompletableFuture<TestObject> r = new CompletableFuture<>();
+                        s.schedule(() -> r.complete(new TestObject()), 300, TimeUnit.MILLISECONDS); return r;
+                    }
+
+                    @Override
+                    public CompletionStage<Void> destroy(TestObject item) {
+                        destroyed.incrementAndGet(); return CompletableFuture.completedFuture(null);
+                    }
+                }).interval(15000).minimum(4).maximum(10).timeout(2000).tenancy(30000).
+                ttl(0).tti(0).prefill(true).concurrency(1).build("factory pool");
+        long mark = System.currentTimeMillis();
+        pool.start();
+        assertTrue(System.currentTimeMillis() - mark < 1000); /* not serialized by the single executor thread */
+        assertNotNull(pool.acquire());
+        pool.stop();
+        assertEquals(4, destroyed.get());
+        s.shutdown();
+    }
+
+    @Test
+    public void testPrefillTimeout() {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).factory(new PoolFactory<TestObject>() {
+                    @Override
+                    public CompletionStage<TestObject> create() {
+                        return new CompletableFuture<>(); /* never completes */
+                    }
+
+                    @Override
+                    public CompletionStage<Void> destroy(TestObject item) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                }).interval(15000).minimum(2).maximum(4).timeout(500).tenancy(30000).
+                ttl(0).tti(0).prefill(true).build("prefill timeout pool");
+        long mark = System.currentTimeMillis();
+        pool.start();
+        assertTrue(System.currentTimeMillis() - mark < 2000); /* bounded by the timeout */
+        pool.stop();
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        AtomicInteger destroyed = new AtomicInteger();
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(TestObject::new).consumer(v -> destroyed.incrementAndGet()).
+                interval(8000).minimum(0).maximum(16).timeout(2000).tenancy(30000).ttl(0).tti(500).build("expiry pool");
+        pool.start();
+        List<TestObject> list = pool.acquire(16, 2000, TimeUnit.MILLISECONDS);
+        assertEquals(16, list.size());
+        pool.releaseAll(list);
+        Thread.sleep(2500); /* a tick is 1 second, a full pulse over all objects takes 8 */
+        assertEquals(16, destroyed.get());
+        pool.stop();
+    }
+
+    @Test
+    public void testClock() throws InterruptedException {
+        ManualClock clock = new ManualClock();
+        AtomicInteger destroyed = new AtomicInteger();
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(TestObject::new).consumer(v -> destroyed.incrementAndGet()).clock(clock).
+                interval(400).minimum(0).maximum(4).timeout(2000).tenancy(0).ttl(0).tti(60000).build("clock pool");
+        pool.start();
+        pool.release(pool.acquire());
+        Thread.sleep(500);
+        assertEquals(0, destroyed.get());
+        clock.add(60001);
+        Thread.sleep(500);
+        assertEquals(1, destroyed.get());
+        pool.stop();
+    }
+
+    @Test
+    public void testFastThreadLocal() throws Exception {
+        for (int i = 0; i < 16; i++) new FastThreadLocal<>("padding"); /* index beyond the initial table */
+        Pool<TestObject> pool = createLitePool(2, 2, 2000, 15000, 0, 0, 0, TestObject::new, null);
+        pool.start();
+        ExecutorService s = Executors.newSingleThreadExecutor(new XThreadFactory("local", true));
+        try {
+            TestObject t = s.submit(() -> { TestObject v = pool.acquire(); pool.release(v); return v; }).get();
+            for (int i = 0; i < 8; i++) assertTrue(t == s.submit(() -> { TestObject v = pool.acquire(); pool.release(v); return v; }).get());
+        } finally {
+            s.shutdown(); pool.stop();
+        }
+    }
+
+    @Test
+    public void testFastThreadLocalReuse() throws Exception {
+        ExecutorService s = Executors.newSingleThreadExecutor(new XThreadFactory("local", true));
+        try {
+            for (int i = 0; i < 8; i++) {
+                Pool<TestObject> pool = createLitePool(1, 1, 2000, 15000, 0, 0, 0, TestObject::new, null);
+                pool.start();
+                TestObject t = s.submit(() -> { TestObject v = pool.acquire(); pool.release(v); return v; }).get();
+                assertTrue(t == s.submit(() -> { TestObject v = pool.acquire(); pool.release(v); return v; }).get());
+                pool.stop(); /* the next pool takes the index given back */
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void testLocals() throws Exception {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(true).locals(3).supplier(TestObject::new).interval(15000).
+                minimum(0).maximum(8).timeout(2000).tenancy(0).ttl(0).tti(0).build("locals pool");
+        pool.start();
+        Set<TestObject> held = new HashSet<>();
+        for (int i = 0; i < 3; i++) held.add(pool.acquire());
+        for (TestObject t : held) pool.release(t);
+        ObjectName n = new ObjectName("cn.nextop.lite.pool:type=PoolAllocator(locals pool.allocator.thread)");
+        long hits = (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "LocalHitCount");
+        Set<TestObject> again = new HashSet<>();
+        for (int i = 0; i < 3; i++) again.add(pool.acquire());
+        assertEquals(held, again);
+        assertEquals(hits + 3, (long) (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "LocalHitCount"));
+        long stolen = (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "LocalStolenCount");
+        long fallbacks = (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "FallbackCount");
+        TestObject other = pool.acquire(); /* every cached slot is busy */
+        assertFalse(again.contains(other));
+        assertEquals(stolen + 1, (long) (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "LocalStolenCount"));
+        assertEquals(fallbacks + 1, (long) (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "FallbackCount"));
+        for (TestObject t : again) pool.release(t);
+        pool.release(other);
+        pool.stop();
+    }
+
+    private static void assertExclusive(Pool<TestObject> pool, int count, int loop) throws InterruptedException {
+        ExecutorService s = Executors.newFixedThreadPool(count);
+        Set<TestObject> busy = ConcurrentHashMap.newKeySet();
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger conflict = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            s.submit(() -> {
+                for (int j = 0; j < loop; j++) {
+                    TestObject t = pool.acquire();
+                    if (t == null) continue;
+                    if (!busy.add(t)) conflict.incrementAndGet();
+                    success.incrementAndGet();
+                    busy.remove(t);
+                    pool.release(t);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        s.shutdown();
+        assertEquals(0, conflict.get());
+        assertEquals(count * loop, success.get());
+    }
+
     @Test
     public void testNoShrink() {
         AtomicInteger id = new AtomicInteger(0);
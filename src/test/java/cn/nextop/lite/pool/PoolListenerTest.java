@@ -18,12 +18,16 @@ package cn.nextop.lite.pool;
 
 import org.junit.Test;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Baoyi Chen
@@ -76,9 +80,43 @@ public class PoolListenerTest extends BaseTest {
         }
         latch.await();
         s.shutdown();
+        Thread.sleep(5000); /* leaks are detected within an interval */
         assertEquals(20, acquire.get());
         assertEquals(10, release.get());
         assertEquals(10, leakage.get());
         pool.stop();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test2() throws Exception {
+        PoolBuilder<TestObject> builder = new PoolBuilder<>();
+        Pool<TestObject> pool = builder.local(false).supplier(TestObject::new).interval(400).minimum(0).
+                maximum(40).timeout(3000).tenancy(400).ttl(0).tti(0).build("pulse pool");
+        AtomicInteger leakage = new AtomicInteger(0);
+        pool.addListener(event -> { if (event.getType() == PoolEvent.Type.LEAKAGE) leakage.incrementAndGet(); });
+        pool.start();
+        for (int i = 0; i < 40; i++) assertNotNull(pool.acquire());
+        Thread.sleep(1500); /* a slice per tick, every slot once per interval */
+        assertEquals(40, leakage.get());
+        ObjectName n = new ObjectName("cn.nextop.lite.pool:type=PoolAllocator(pulse pool.allocator.default)");
+        assertTrue((Long) ManagementFactory.getPlatformMBeanServer().getAttribute(n, "PulseTime") > 0);
+        pool.stop();
+    }
+
+    @Test
+    public void test1() {
+        Pool<TestObject> pool = createLitePool(2, 10, 3000, 5000, 0, 10000, 4000, () -> new TestObject(), null);
+        AtomicInteger count = new AtomicInteger(0);
+        PoolListener<TestObject> listener = event -> count.incrementAndGet();
+        pool.start();
+        pool.release(pool.acquire());
+        assertEquals(0, count.get());
+        pool.addListener(listener);
+        pool.release(pool.acquire());
+        assertEquals(2, count.get());
+        pool.delListener(listener);
+        pool.release(pool.acquire());
+        assertEquals(2, count.get());
+        pool.stop();
+    }
+}
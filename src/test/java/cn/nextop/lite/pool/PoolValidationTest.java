@@ -16,15 +16,21 @@
 
 package cn.nextop.lite.pool;
 
+import cn.nextop.lite.pool.support.allocator.BagAllocator;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static cn.nextop.lite.pool.PoolValidation.ACQUIRE;
+import static cn.nextop.lite.pool.PoolValidation.BACKGROUND;
 import static cn.nextop.lite.pool.PoolValidation.PULSE;
 import static cn.nextop.lite.pool.PoolValidation.RELEASE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Baoyi Chen
@@ -56,6 +62,90 @@ public class PoolValidationTest extends BaseTest {
         assertEquals(1, acc.get());
     }
 
+    @Test
+    public void test2() throws InterruptedException {
+        AtomicInteger acc = new AtomicInteger(0);
+        Pool<TestObject2> pool = createLitePool(2, 10, 3000, 5000, 0, 10000, 4000, TestObject2::new, v -> {
+            try { Thread.sleep(300); } catch (InterruptedException e) { throw new RuntimeException(e); }
+            acc.incrementAndGet();
+        });
+        pool.getConfig().setValidation(new PoolValidation((byte)(RELEASE | ACQUIRE)));
+        pool.getConfig().setValidator(v -> v.valid);
+        pool.start();
+        TestObject2 o = pool.acquire();
+        o.valid = false;
+        long mark = System.currentTimeMillis();
+        pool.release(o);
+        assertTrue(System.currentTimeMillis() - mark < 200); /* destroyed off the caller's thread */
+        assertEquals(0, acc.get());
+        pool.stop(5, TimeUnit.SECONDS);
+        assertEquals(3, acc.get());
+    }
+
+    @Test
+    public void test3() throws InterruptedException {
+        AtomicInteger acc = new AtomicInteger(0);
+        AtomicInteger acc1 = new AtomicInteger(0);
+        Pool<TestObject2> pool = createLitePool(2, 10, 3000, 400, 0, 10000, 4000, () -> {
+            acc1.incrementAndGet(); return new TestObject2();
+        }, null);
+        pool.getConfig().setValidation(new PoolValidation((byte)(ACQUIRE | BACKGROUND)));
+        pool.getConfig().setValidator(v -> { acc.incrementAndGet(); return v.valid; });
+        pool.getConfig().setFreshness(60000);
+        pool.start();
+        Thread.sleep(1000);
+        assertEquals(2, acc.get());
+        TestObject2 o = pool.acquire();
+        assertEquals(2, acc.get()); /* validated in background recently */
+        pool.getConfig().setFreshness(0);
+        o.valid = false;
+        pool.release(o);
+        Thread.sleep(1000);
+        assertEquals(3, acc1.get());
+        pool.stop();
+    }
+
+    @Test
+    public void test4() throws InterruptedException {
+        AtomicInteger acc = new AtomicInteger(0);
+        AtomicInteger acc1 = new AtomicInteger(0);
+        PoolBuilder<TestObject2> builder = new PoolBuilder<>();
+        Pool<TestObject2> pool = builder.local(false).supplier(() -> { acc1.incrementAndGet(); return new TestObject2(); }).
+                consumer(v -> acc.incrementAndGet()).interval(400).minimum(2).maximum(10).timeout(3000).tenancy(4000).
+                ttl(0).tti(0).validation(new PoolValidation((byte) BACKGROUND)).validator(v -> v.valid).
+                allocator(new BagAllocator.Factory<>()).build("bag validation pool");
+        pool.start();
+        Thread.sleep(500);
+        assertEquals(2, acc1.get());
+        TestObject2 o = pool.acquire();
+        o.valid = false;
+        pool.release(o);
+        Thread.sleep(1000);
+        assertEquals(1, acc.get()); /* revalidated in background */
+        assertEquals(3, acc1.get());
+        pool.stop();
+    }
+
+    @Test
+    public void test5() throws InterruptedException {
+        AtomicInteger acc = new AtomicInteger(0);
+        Pool<TestObject2> pool = createLitePool(0, 4, 3000, 15000, 0, 0, 4000, TestObject2::new, v -> acc.incrementAndGet());
+        pool.getConfig().setValidation(new PoolValidation((byte) ACQUIRE));
+        pool.getConfig().setValidator(v -> v.valid);
+        pool.start();
+        List<TestObject2> a = pool.acquire(4, 1000, TimeUnit.MILLISECONDS);
+        assertEquals(4, a.size());
+        for (TestObject2 v : a) v.valid = false;
+        pool.releaseAll(a);
+        List<TestObject2> b = pool.acquire(4, 1000, TimeUnit.MILLISECONDS); /* invalid ones are destroyed and replaced */
+        assertEquals(4, b.size());
+        for (TestObject2 v : b) assertTrue(v.valid);
+        for (int i = 0; i < 50 && acc.get() < 4; i++) Thread.sleep(20); /* destroyed in background */
+        assertEquals(4, acc.get());
+        pool.releaseAll(b);
+        pool.stop();
+    }
+
     @Test
     public void test1() throws InterruptedException {
         Pool<TestObject2> pool = createLitePool(2, 10, 1000, 5000, 0, 10000, 4000, () -> {
@@ -73,4 +163,23 @@ public class PoolValidationTest extends BaseTest {
         pool.stop();
     }
 
+    @Test
+    public void test6() {
+        AtomicInteger acc = new AtomicInteger(0);
+        PoolBuilder<TestObject2> builder = new PoolBuilder<>();
+        Pool<TestObject2> pool = builder.local(true).locals(3).supplier(TestObject2::new).interval(15000).
+                minimum(0).maximum(8).timeout(3000).tenancy(0).ttl(0).tti(0).validation(new PoolValidation((byte) ACQUIRE)).
+                validator(v -> { if (!v.valid) acc.incrementAndGet(); return v.valid; }).build("locals validation pool");
+        pool.start();
+        List<TestObject2> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) held.add(pool.acquire());
+        for (TestObject2 o : held) pool.release(o);
+        for (TestObject2 o : held) o.valid = false;
+        TestObject2 o = pool.acquire();
+        assertTrue(o != null && o.valid);
+        assertEquals(3, acc.get()); /* one cached candidate destroyed, then each other idle one of the parent */
+        pool.release(o);
+        pool.stop();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.benchmark;
+
+import cn.nextop.lite.pool.util.concurrent.StripedCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The idle / wait counters of an allocator, updated on every acquire and release and
+ * read by isExpandable(), as adjacent AtomicIntegers versus striped counters.
+ *
+ * @author Jingqi Xu
+ */
+@State(Scope.Benchmark)
+public class CounterBenchmark {
+
+    public final AtomicInteger atomicIdle = new AtomicInteger();
+    public final AtomicInteger atomicWait = new AtomicInteger();
+    public final StripedCounter stripedIdle = new StripedCounter();
+    public final StripedCounter stripedWait = new StripedCounter();
+
+    @Benchmark
+    @Threads(1)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int atomic_01_thread() {
+        return atomic();
+    }
+
+    @Benchmark
+    @Threads(50)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int atomic_50_thread() {
+        return atomic();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int striped_01_thread() {
+        return striped();
+    }
+
+    @Benchmark
+    @Threads(50)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int striped_50_thread() {
+        return striped();
+    }
+
+    private int atomic() {
+        atomicWait.incrementAndGet();
+        int r = atomicIdle.get() + atomicWait.get();
+        atomicIdle.decrementAndGet();
+        atomicWait.decrementAndGet();
+        atomicIdle.incrementAndGet();
+        return r;
+    }
+
+    private int striped() {
+        stripedWait.increment();
+        int r = stripedIdle.get() + stripedWait.get();
+        stripedIdle.decrement();
+        stripedWait.decrement();
+        stripedIdle.increment();
+        return r;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CounterBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.benchmark;
+
+import cn.nextop.lite.pool.BaseTest;
+import cn.nextop.lite.pool.Pool;
+import com.sun.management.OperatingSystemMXBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads greatly outnumber the pool maximum, prints the cpu cores used per iteration.
+ *
+ * @author Baoyi Chen
+ */
+@State(Scope.Benchmark)
+public class ExhaustedPoolBenchmark extends BaseTest {
+
+    @Param({"0", "64"})
+    public int spins;
+
+    public Pool<TestObject> pool;
+
+    private long cpu, wall;
+
+    @Setup(Level.Trial)
+    public void doSetup() {
+        pool = createLitePool(4, 4, 5000, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.getConfig().setLocal(false);
+        pool.getConfig().setSpins(spins);
+        pool.getConfig().setYields(spins);
+        pool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDown() {
+        pool.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void doMark() {
+        cpu = getProcessCpuTime();
+        wall = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void doReport() {
+        double cores = (double) (getProcessCpuTime() - cpu) / (System.nanoTime() - wall);
+        System.out.printf(" (cpu: %.2f cores)", cores);
+    }
+
+    @Benchmark
+    @Threads(128)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void lite_pool_128_thread() {
+        TestObject object = pool.acquire();
+        if (object == null) return;
+        Blackhole.consumeCPU(1000);
+        pool.release(object);
+    }
+
+    private static long getProcessCpuTime() {
+        return ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ExhaustedPoolBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.benchmark;
+
+import cn.nextop.lite.pool.BaseTest;
+import cn.nextop.lite.pool.Pool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards the steady-state acquire / release path, gc.alloc.rate.norm should stay at ~0 B/op.
+ *
+ * @author Baoyi Chen
+ */
+@State(Scope.Benchmark)
+public class GarbageBenchmark extends BaseTest {
+
+    @Param({"true", "false"})
+    public boolean local;
+
+    public Pool<TestObject> pool;
+
+    @Setup(Level.Trial)
+    public void doSetup() {
+        pool = createLitePool(10, 10, 5000, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.getConfig().setLocal(local);
+        pool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDown() {
+        pool.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TestObject lite_pool_01_thread() {
+        TestObject object = pool.acquire();
+        if (object != null) pool.release(object);
+        return object;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(GarbageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.benchmark;
+
+import cn.nextop.lite.pool.BaseTest;
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.util.concurrent.thread.XThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local=true acquire / release path on a plain thread versus a XThreadFactory thread,
+ * the former falls back to a ThreadLocal and the latter uses the indexed FastThreadLocal.
+ *
+ * @author Jingqi Xu
+ */
+@State(Scope.Benchmark)
+public class ThreadLocalBenchmark extends BaseTest {
+
+    private static final int OPERATIONS = 10000;
+
+    public Pool<TestObject> pool;
+
+    public ExecutorService plain, aware;
+
+    @Setup(Level.Trial)
+    public void doSetup() {
+        plain = Executors.newSingleThreadExecutor();
+        aware = Executors.newSingleThreadExecutor(new XThreadFactory("benchmark", true));
+        pool = createLitePool(10, 10, 5000, 15000, 0, 0, 30000, () -> new TestObject(), null);
+        pool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDown() {
+        plain.shutdown();
+        aware.shutdown();
+        pool.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(OPERATIONS)
+    public int plain_thread() throws Exception {
+        return plain.submit(this::run).get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(OPERATIONS)
+    public int xthread_factory_thread() throws Exception {
+        return aware.submit(this::run).get();
+    }
+
+    private int run() {
+        int r = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            TestObject object = pool.acquire();
+            if (object != null) { pool.release(object); r++; }
+        }
+        return r;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ThreadLocalBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
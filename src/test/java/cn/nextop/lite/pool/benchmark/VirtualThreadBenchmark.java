@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.benchmark;
+
+import cn.nextop.lite.pool.BaseTest;
+import cn.nextop.lite.pool.Pool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10k virtual threads contend for a small pool, requires java 21+ to run.
+ *
+ * @author Baoyi Chen
+ */
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark extends BaseTest {
+
+    private static final int THREADS = 10000;
+
+    @Param({"true", "false"})
+    public boolean local;
+
+    public Pool<TestObject> pool;
+
+    public ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void doSetup() throws Exception {
+        // Created by reflection since the tests are compiled for 1.8
+        executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        pool = createLitePool(16, 16, 60000, 15000, 0, 0, 60000, () -> new TestObject(), null);
+        pool.getConfig().setLocal(local);
+        pool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDown() {
+        executor.shutdown();
+        pool.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void lite_pool_10k_virtual_thread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                TestObject object = pool.acquire();
+                if (object != null) {
+                    Blackhole.consumeCPU(1000);
+                    pool.release(object);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(VirtualThreadBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
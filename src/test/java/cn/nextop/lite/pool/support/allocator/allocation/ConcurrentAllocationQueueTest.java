@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.support.allocator.allocation;
+
+import cn.nextop.lite.pool.Pool;
+import cn.nextop.lite.pool.PoolBuilder;
+import cn.nextop.lite.pool.support.PoolAllocator.Slot;
+import cn.nextop.lite.pool.util.Objects;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Baoyi Chen
+ */
+public class ConcurrentAllocationQueueTest {
+
+    @Test
+    public void testChurn() {
+        ConcurrentAllocationQueue<Object> queue = new ConcurrentAllocationQueue<>(createPool());
+        Slot<Object> idle = createSlot();
+        assertTrue(queue.offer(idle)); /* never drained */
+        for (int i = 0; i < 100000; i++) {
+            Slot<Object> v = createSlot();
+            assertTrue(queue.offer(v));
+            assertTrue(queue.remove(v));
+        }
+        assertEquals(1, queue.size());
+        assertTrue(queue.values.size() <= 1 + 32 + 2); /* removed nodes are purged lazily */
+        assertEquals(1, queue.index.size());
+        assertTrue(queue.poll() != null && queue.poll() == null);
+    }
+
+    @Test
+    public void testStress() throws Exception {
+        ConcurrentAllocationQueue<Object> queue = new ConcurrentAllocationQueue<>(createPool());
+        List<Slot<Object>> slots = new ArrayList<>();
+        for (int i = 0; i < 2; i++) { slots.add(createSlot()); queue.offer(slots.get(i)); }
+        Set<Slot<Object>> busy = ConcurrentHashMap.newKeySet();
+        AtomicInteger conflict = new AtomicInteger(), lost = new AtomicInteger();
+        ExecutorService s = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            s.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 100000; j++) {
+                    Slot<Object> v;
+                    if (random.nextBoolean()) { if ((v = queue.poll()) == null) continue; }
+                    else if (!queue.remove(v = slots.get(random.nextInt(2)))) continue; /* owned by others */
+                    if (!busy.add(v)) conflict.incrementAndGet();
+                    busy.remove(v);
+                    if (!queue.offer(v)) lost.incrementAndGet(); /* the owner's offer must never be a duplicate */
+                }
+            });
+        }
+        s.shutdown();
+        assertTrue(s.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, conflict.get());
+        assertEquals(0, lost.get());
+        assertEquals(2, queue.size());
+        Set<Slot<Object>> drained = new HashSet<>();
+        for (Slot<Object> v; (v = queue.poll()) != null; ) drained.add(v);
+        assertEquals(2, drained.size());
+        assertEquals(0, queue.size());
+    }
+
+    private static Pool<Object> createPool() {
+        return new PoolBuilder<>().supplier(Object::new).lockfree(true).build("queue pool");
+    }
+
+    private static Slot<Object> createSlot() {
+        return Objects.cast(Proxy.newProxyInstance(Slot.class.getClassLoader(), new Class<?>[]{Slot.class}, (p, m, a) -> {
+            if (m.getName().equals("hashCode")) return System.identityHashCode(p);
+            if (m.getName().equals("equals")) return p == a[0];
+            return null;
+        }));
+    }
+}
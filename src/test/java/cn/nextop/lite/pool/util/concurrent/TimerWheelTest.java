@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016-2018 Nextop Co.,Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nextop.lite.pool.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jingqi Xu
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void testCancel() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 8, 0);
+        List<String> fired = new ArrayList<>();
+        TimerWheel.Entry<String> a = wheel.schedule("a", 25);
+        wheel.schedule("b", 25);
+        wheel.advance(10, fired::add); /* bucketed */
+        a.cancel();
+        assertTrue(a.isCancelled());
+        assertEquals(1, wheel.advance(30, fired::add));
+        assertEquals(1, fired.size());
+        assertEquals("b", fired.get(0));
+        TimerWheel.Entry<String> c = wheel.schedule("c", 1000); /* cancelled while pending */
+        c.cancel();
+        assertEquals(0, wheel.advance(2000, fired::add));
+        for (Queue<?> v : wheel.buckets) assertTrue(v.isEmpty());
+    }
+}